@@ -0,0 +1,488 @@
+package io.github.k7t3.hpt;
+
+import javafx.application.Platform;
+import javafx.event.EventType;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.robot.Robot;
+import javafx.stage.Screen;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Monocleのヘッドレスプラットフォーム上で{@link HoveringPointTrackerScene}を起動し、
+ * 合成したマウスイベントを一定のレートで送り続けたときのパルスの所要時間、イベントの処理数、
+ * JavaFX Application Threadのメモリ割り当て量を計測するハーネス。
+ * <p>
+ * ディスプレイのない環境でも実行できる。{@code ./gradlew headlessBenchmark} で実行し、
+ * 引数は {@code -PharnessArgs="--scenario=drag-corner --points=5000"} のように指定する。
+ * <pre>
+ * --scenario=NAME  drag-corner, hover, click-storm, startup (既定: drag-corner)
+ * --duration=SEC   計測時間 (既定: 10)
+ * --warmup=SEC     計測前に同じシナリオを実行する時間 (既定: 3)
+ * --rate=N         1秒あたりに送るイベント数 (既定: 1000)
+ * --points=N       あらかじめ配置しておくクリックポイントの数 (既定: 5000)
+ * --rounds=N       startupで起動を繰り返す回数 (既定: 5)
+ * --renderer=NAME  binding, region (既定: binding)
+ * --cache=NAME     layers, root (既定: layers)。rootはルート全体をキャッシュする以前の構成
+ * --fit-window     ウインドウを描画範囲の周囲だけにする
+ * </pre>
+ * パルスの所要時間はSceneのレイアウトパルスの前後で計測するため、CSS・レイアウト・バインディングの評価は
+ * 含むがレンダリングスレッドでの描画は含まない。描画のコストはレンダリングスレッドのCPU時間として別に出力する。
+ */
+public final class HeadlessBenchmark {
+
+    /**
+     * 計測するシナリオ。
+     */
+    enum Scenario {
+
+        /**
+         * 右下ノードを掴んで描画範囲の伸長と縮小を繰り返す。
+         */
+        DRAG_CORNER("drag-corner"),
+
+        /**
+         * 描画範囲の内側でポインタを動かし続ける。
+         */
+        HOVER("hover"),
+
+        /**
+         * 描画範囲の内側をクリックし続ける。
+         */
+        CLICK_STORM("click-storm"),
+
+        /**
+         * 設定画面の有無による起動時間を比較する。{@link StartupBenchmark}を参照。
+         */
+        STARTUP("startup");
+
+        private final String label;
+
+        Scenario(String label) {
+            this.label = label;
+        }
+
+        static Scenario of(String label) {
+            for (Scenario scenario : values()) {
+                if (scenario.label.equals(label)) {
+                    return scenario;
+                }
+            }
+            throw new IllegalArgumentException("unknown scenario: " + label);
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * 初期状態の描画範囲
+     */
+    private static final double MIN_X = 100;
+    private static final double MIN_Y = 100;
+    private static final double WIDTH = 600;
+    private static final double HEIGHT = 400;
+
+    /**
+     * 右下ノードを動かす振幅
+     */
+    private static final double DRAG_AMPLITUDE = 200;
+
+    /**
+     * ポインタの軌道の周期
+     */
+    private static final double PATH_PERIOD_SECONDS = 2;
+
+    /**
+     * 一度に{@link Platform#runLater}で送るイベントの上限
+     */
+    private static final int MAX_BATCH = 256;
+
+    /**
+     * Prismのレンダリングスレッドの名前
+     */
+    private static final String RENDER_THREAD_PREFIX = "QuantumRenderer";
+
+    private final Scenario scenario;
+
+    private final GeometryRenderer renderer;
+
+    private final boolean rootCached;
+
+    private final boolean fitWindow;
+
+    private final double durationSeconds;
+
+    private final double warmupSeconds;
+
+    private final int rate;
+
+    private final int points;
+
+    private final Random random = new Random(0);
+
+    private SceneProperties properties;
+
+    private HoveringPointTrackerScene scene;
+
+    private Robot robot;
+
+    private long fxThreadId;
+
+    // 以下はJavaFX Application Threadからのみ操作する
+
+    private long[] pulseNanos = new long[1024];
+
+    private int pulseCount = 0;
+
+    private long pulseStart = 0;
+
+    private long firstPulseStart = 0;
+
+    private long lastPulseStart = 0;
+
+    private final long[] eventCounts = new long[3];
+
+    private boolean measuring = false;
+
+    private boolean pressed = false;
+
+    private HeadlessBenchmark(Scenario scenario, GeometryRenderer renderer, boolean rootCached, boolean fitWindow,
+                              double durationSeconds, double warmupSeconds, int rate, int points) {
+        this.scenario = scenario;
+        this.renderer = renderer;
+        this.rootCached = rootCached;
+        this.fitWindow = fitWindow;
+        this.durationSeconds = durationSeconds;
+        this.warmupSeconds = warmupSeconds;
+        this.rate = rate;
+        this.points = points;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Scenario scenario = Scenario.DRAG_CORNER;
+        double duration = 10;
+        double warmup = 3;
+        int rate = 1000;
+        int points = 5000;
+        int rounds = 5;
+        GeometryRenderer renderer = GeometryRenderer.BINDING;
+        boolean rootCached = false;
+        boolean fitWindow = false;
+
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            String key = index < 0 ? arg : arg.substring(0, index);
+            String value = index < 0 ? "" : arg.substring(index + 1);
+            switch (key) {
+                case "--scenario" -> scenario = Scenario.of(value);
+                case "--duration" -> duration = Double.parseDouble(value);
+                case "--warmup" -> warmup = Double.parseDouble(value);
+                case "--rate" -> rate = Integer.parseInt(value);
+                case "--points" -> points = Integer.parseInt(value);
+                case "--rounds" -> rounds = Integer.parseInt(value);
+                case "--renderer" -> renderer = GeometryRenderer.of(value);
+                case "--fit-window" -> fitWindow = true;
+                case "--cache" -> rootCached = switch (value) {
+                    case "layers" -> false;
+                    case "root" -> true;
+                    default -> throw new IllegalArgumentException("unknown cache: " + value);
+                };
+                default -> throw new IllegalArgumentException("unknown option: " + arg);
+            }
+        }
+
+        // Gradleのタスク以外から起動されたときもヘッドレスで動作するように
+        setPropertyIfAbsent("glass.platform", "Monocle");
+        setPropertyIfAbsent("monocle.platform", "Headless");
+        setPropertyIfAbsent("prism.order", "sw");
+
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        Platform.startup(() -> started.complete(null));
+        started.get();
+        Platform.setImplicitExit(false);
+
+        try {
+            if (scenario == Scenario.STARTUP) {
+                new StartupBenchmark(rounds).run();
+            } else {
+                new HeadlessBenchmark(scenario, renderer, rootCached, fitWindow, duration, warmup, rate, points).run();
+            }
+        } finally {
+            Platform.exit();
+        }
+    }
+
+    private static void setPropertyIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    private void run() throws Exception {
+        onFxThread(() -> {
+            setUp();
+            return null;
+        });
+
+        System.out.printf("scenario=%s renderer=%s cache=%s fit-window=%s duration=%.1fs warmup=%.1fs rate=%d/s points=%d%n",
+                scenario, renderer, rootCached ? "root" : "layers", fitWindow, durationSeconds, warmupSeconds, rate, points);
+
+        if (0 < warmupSeconds) {
+            drive(warmupSeconds);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long gcCountBefore = gcCount();
+        long renderThreadId = findThreadId(RENDER_THREAD_PREFIX);
+        long renderCpuBefore = renderThreadId < 0 ? 0 : threads.getThreadCpuTime(renderThreadId);
+        long allocatedBefore = onFxThread(() -> {
+            resetStatistics();
+            measuring = true;
+            return threads.getThreadAllocatedBytes(fxThreadId);
+        });
+        long start = System.nanoTime();
+
+        drive(durationSeconds);
+
+        long allocatedAfter = onFxThread(() -> {
+            measuring = false;
+            return threads.getThreadAllocatedBytes(fxThreadId);
+        });
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        long gcCount = gcCount() - gcCountBefore;
+        long renderCpu = renderThreadId < 0 ? -1 : threads.getThreadCpuTime(renderThreadId) - renderCpuBefore;
+
+        onFxThread(() -> {
+            report(elapsedSeconds, allocatedAfter - allocatedBefore, gcCount, renderCpu);
+            return null;
+        });
+    }
+
+    private void setUp() {
+        fxThreadId = Thread.currentThread().getId();
+
+        properties = new SceneProperties();
+        properties.setScreen(Screen.getPrimary());
+        properties.setGeometry(MIN_X, MIN_Y, WIDTH, HEIGHT);
+
+        scene = new HoveringPointTrackerScene(properties, renderer);
+        scene.setRootCached(rootCached);
+        scene.setFitWindowToGeometry(fitWindow);
+
+        // 描画範囲の内側にクリックポイントを配置しておく
+        for (int i = 0; i < points; i++) {
+            scene.addClickPoint(
+                    MIN_X + 10 + random.nextDouble() * (WIDTH - 20),
+                    MIN_Y + 10 + random.nextDouble() * (HEIGHT - 20));
+        }
+
+        scene.addPreLayoutPulseListener(() -> pulseStart = System.nanoTime());
+        scene.addPostLayoutPulseListener(this::recordPulse);
+        scene.addEventFilter(MouseEvent.ANY, e -> countEvent(e.getEventType()));
+
+        Stage stage = new Stage(StageStyle.TRANSPARENT);
+        stage.setScene(scene);
+        stage.show();
+
+        robot = new Robot();
+    }
+
+    /**
+     * 指定した時間、シナリオに従ってイベントを送る。
+     * <p>
+     * イベントは経過時間から求めた数だけまとめて{@link Platform#runLater}で送る。
+     * JavaFX Application Threadが追いつかない場合は前のバッチの完了を待つため、キューが際限なく伸びることはない。
+     */
+    private void drive(double seconds) throws Exception {
+        onFxThread(() -> {
+            begin();
+            return null;
+        });
+
+        AtomicBoolean inFlight = new AtomicBoolean();
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        long issued = 0;
+
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            long due = (long) ((now - start) / 1e9 * rate) - issued;
+            if (0 < due && inFlight.compareAndSet(false, true)) {
+                int count = (int) Math.min(due, MAX_BATCH);
+                long first = issued;
+                Platform.runLater(() -> {
+                    for (int i = 0; i < count; i++) {
+                        step((double) (first + i) / rate);
+                    }
+                    inFlight.set(false);
+                });
+                issued += count;
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+        }
+
+        onFxThread(() -> {
+            finish();
+            return null;
+        });
+    }
+
+    private void begin() {
+        if (scenario == Scenario.DRAG_CORNER) {
+            double edge = properties.getEdgeWidth() / 2;
+            robot.mouseMove(MIN_X + WIDTH - edge, MIN_Y + HEIGHT - edge);
+            robot.mousePress(MouseButton.PRIMARY);
+            pressed = true;
+        }
+    }
+
+    private void finish() {
+        if (pressed) {
+            robot.mouseRelease(MouseButton.PRIMARY);
+            pressed = false;
+        }
+    }
+
+    /**
+     * シナリオ開始からの時刻に対応する1イベントを送る。
+     * @param time シナリオ開始からの秒数
+     */
+    private void step(double time) {
+        double phase = 2 * Math.PI * time / PATH_PERIOD_SECONDS;
+        switch (scenario) {
+            case DRAG_CORNER -> {
+                // 初期サイズより小さくしないことで、配置したクリックポイントを維持する
+                double edge = properties.getEdgeWidth() / 2;
+                double offset = DRAG_AMPLITUDE * (1 - Math.cos(phase)) / 2;
+                robot.mouseMove(MIN_X + WIDTH - edge + offset, MIN_Y + HEIGHT - edge + offset * 0.75);
+            }
+            case HOVER -> robot.mouseMove(
+                    MIN_X + WIDTH / 2 + (WIDTH / 2 - 20) * Math.sin(phase),
+                    MIN_Y + HEIGHT / 2 + (HEIGHT / 2 - 20) * Math.sin(phase * 2));
+            case CLICK_STORM -> {
+                robot.mouseMove(
+                        MIN_X + 20 + random.nextDouble() * (WIDTH - 40),
+                        MIN_Y + 20 + random.nextDouble() * (HEIGHT - 40));
+                robot.mouseClick(MouseButton.PRIMARY);
+            }
+        }
+    }
+
+    private void countEvent(EventType<? extends MouseEvent> type) {
+        if (!measuring) {
+            return;
+        }
+        if (type == MouseEvent.MOUSE_MOVED) {
+            eventCounts[0]++;
+        } else if (type == MouseEvent.MOUSE_DRAGGED) {
+            eventCounts[1]++;
+        } else if (type == MouseEvent.MOUSE_CLICKED) {
+            eventCounts[2]++;
+        }
+    }
+
+    private void recordPulse() {
+        if (!measuring || pulseStart == 0) {
+            return;
+        }
+        if (pulseCount == pulseNanos.length) {
+            pulseNanos = Arrays.copyOf(pulseNanos, pulseCount * 2);
+        }
+        pulseNanos[pulseCount++] = System.nanoTime() - pulseStart;
+        if (firstPulseStart == 0) {
+            firstPulseStart = pulseStart;
+        }
+        lastPulseStart = pulseStart;
+    }
+
+    private void resetStatistics() {
+        pulseCount = 0;
+        firstPulseStart = 0;
+        lastPulseStart = 0;
+        Arrays.fill(eventCounts, 0);
+    }
+
+    private void report(double elapsedSeconds, long allocatedBytes, long gcCount, long renderCpuNanos) {
+        long[] sorted = Arrays.copyOf(pulseNanos, pulseCount);
+        Arrays.sort(sorted);
+
+        double frames = 1 < pulseCount ? (pulseCount - 1) / ((lastPulseStart - firstPulseStart) / 1e9) : 0;
+
+        System.out.printf("pulses            : %d (%.1f/s)%n", pulseCount, frames);
+        System.out.printf("pulse time (us)   : p50=%.1f p90=%.1f p99=%.1f max=%.1f%n",
+                percentile(sorted, 0.50) / 1e3,
+                percentile(sorted, 0.90) / 1e3,
+                percentile(sorted, 0.99) / 1e3,
+                (sorted.length == 0 ? 0 : sorted[sorted.length - 1]) / 1e3);
+        System.out.printf("events (/s)       : moved=%.0f dragged=%.0f clicked=%.0f%n",
+                eventCounts[0] / elapsedSeconds,
+                eventCounts[1] / elapsedSeconds,
+                eventCounts[2] / elapsedSeconds);
+        System.out.printf("fx allocation     : %.1f MB (%.1f MB/s)%n",
+                allocatedBytes / 1e6,
+                allocatedBytes / 1e6 / elapsedSeconds);
+        System.out.printf("gc                : %d collections%n", gcCount);
+        if (0 <= renderCpuNanos) {
+            System.out.printf("render thread cpu : %.1f ms (%.1f%%)%n",
+                    renderCpuNanos / 1e6,
+                    renderCpuNanos / 1e9 / elapsedSeconds * 100);
+        }
+        System.out.printf("click points      : %d%n", scene.getClickPointCount());
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * 名前が指定した文字列で始まるスレッドのID。
+     * @return 見つからないときは-1
+     */
+    private static long findThreadId(String prefix) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(prefix)) {
+                return thread.getId();
+            }
+        }
+        return -1;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    static <T> T onFxThread(Supplier<T> task) throws Exception {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                future.complete(task.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future.get();
+    }
+
+}
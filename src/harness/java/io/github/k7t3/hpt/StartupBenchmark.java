@@ -0,0 +1,125 @@
+package io.github.k7t3.hpt;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.stage.Screen;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 起動してから描画範囲が最初に描画されるまでの時間を計測する。
+ * <p>
+ * 設定画面を表示してOKを押す通常の起動と、{@link HPTApplication#FAST_START_PARAMETER}で設定画面を省略した起動を交互に計測する。
+ * 設定画面のOKはその画面の最初のパルスの直後に押したものとする。
+ * 最初のフレームは描画範囲のSceneの最初のレイアウトパルスが終わった時点とする。
+ */
+final class StartupBenchmark {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final int rounds;
+
+    StartupBenchmark(int rounds) {
+        this.rounds = rounds;
+    }
+
+    void run() throws Exception {
+        System.out.printf("scenario=startup rounds=%d%n", rounds);
+
+        long[] dialog = new long[rounds];
+        long[] fast = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            dialog[i] = measure(true);
+            fast[i] = measure(false);
+        }
+
+        report("with dialog", dialog);
+        report("fast start ", fast);
+    }
+
+    private long measure(boolean withDialog) throws Exception {
+        CompletableFuture<Long> firstFrame = new CompletableFuture<>();
+        Stage[] overlay = new Stage[1];
+
+        Platform.runLater(() -> {
+            long start = System.nanoTime();
+
+            SceneProperties properties = new SceneProperties();
+            properties.setScreen(Screen.getPrimary());
+            properties.setGeometry(100, 100, 600, 400);
+
+            Runnable showOverlay = () -> {
+                HoveringPointTrackerScene scene = new HoveringPointTrackerScene(properties);
+                scene.addPostLayoutPulseListener(() -> firstFrame.complete(System.nanoTime() - start));
+
+                Stage stage = new Stage(StageStyle.TRANSPARENT);
+                stage.setScene(scene);
+                stage.show();
+                overlay[0] = stage;
+            };
+
+            if (!withDialog) {
+                showOverlay.run();
+                return;
+            }
+
+            PropertyViewController controller = new PropertyViewController(properties);
+            controller.setOnHidden(e -> {
+                if (controller.isCancelled()) {
+                    firstFrame.completeExceptionally(new IllegalStateException("dialog was cancelled"));
+                } else {
+                    showOverlay.run();
+                }
+            });
+            controller.refresh();
+            boolean[] pressed = new boolean[1];
+            controller.getScene().addPostLayoutPulseListener(() -> {
+                if (pressed[0]) {
+                    return;
+                }
+                pressed[0] = true;
+                Platform.runLater(() -> findDefaultButton(controller).fire());
+            });
+            controller.show();
+        });
+
+        try {
+            return firstFrame.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } finally {
+            HeadlessBenchmark.onFxThread(() -> {
+                if (overlay[0] != null) {
+                    overlay[0].close();
+                }
+                return null;
+            });
+        }
+    }
+
+    private static Button findDefaultButton(PropertyViewController controller) {
+        for (Node node : controller.getScene().getRoot().lookupAll(".button")) {
+            if (node instanceof Button button && button.isDefaultButton()) {
+                return button;
+            }
+        }
+        throw new IllegalStateException("default button not found");
+    }
+
+    /**
+     * 最初の回はクラスの読み込みなどを含むため、2回目以降と分けて出力する。
+     */
+    private static void report(String label, long[] nanos) {
+        long[] warm = Arrays.copyOfRange(nanos, Math.min(1, nanos.length), nanos.length);
+        Arrays.sort(warm);
+        System.out.printf("%s : first=%.1fms", label, nanos[0] / 1e6);
+        if (0 < warm.length) {
+            System.out.printf(" median=%.1fms min=%.1fms", warm[warm.length / 2] / 1e6, warm[0] / 1e6);
+        }
+        System.out.println();
+    }
+
+}
@@ -0,0 +1,83 @@
+package io.github.k7t3.hpt;
+
+import javafx.geometry.Rectangle2D;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 描画範囲の移動に伴うクリックポイントの削除判定と、ツールチップのための近傍検索のコスト。
+ * <p>
+ * ポイントは描画範囲の内側に一様に配置し、描画範囲は1ピクセルずつ往復させる。
+ * {@code linearSweep}は以前の実装と同じく、ポイントごとに{@link Rectangle2D}を生成して全件を判定する。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClickPointsBenchmark {
+
+    private static final double RADIUS = 3;
+
+    @Param({"1000", "10000", "100000"})
+    public int count;
+
+    private ClickPoints points;
+
+    private double[] xs;
+
+    private double[] ys;
+
+    private int step;
+
+    @Setup
+    public void setUp() {
+        points = new ClickPoints();
+        xs = new double[count];
+        ys = new double[count];
+
+        // 描画範囲(100, 100, 2000, 1200)の内側に配置する
+        Random random = new Random(0);
+        for (int i = 0; i < count; i++) {
+            xs[i] = 120 + random.nextDouble() * 1960;
+            ys[i] = 120 + random.nextDouble() * 1160;
+            points.add(xs[i], ys[i]);
+        }
+    }
+
+    private double offset() {
+        step = (step + 1) & 15;
+        return step;
+    }
+
+    @Benchmark
+    public int retainIntersecting() {
+        double offset = offset();
+        return points.retainIntersecting(100 + offset, 100 + offset, 2000, 1200, RADIUS);
+    }
+
+    @Benchmark
+    public int linearSweep() {
+        double offset = offset();
+        Rectangle2D rectangle = new Rectangle2D(100 + offset, 100 + offset, 2000, 1200);
+
+        int removed = 0;
+        for (int i = 0; i < count; i++) {
+            Rectangle2D point = new Rectangle2D(xs[i], ys[i], RADIUS, RADIUS);
+            if (!rectangle.intersects(point)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Benchmark
+    public int findNearest() {
+        double offset = offset() * 100;
+        return points.findNearest(200 + offset, 300 + offset / 2, RADIUS);
+    }
+
+}
@@ -0,0 +1,76 @@
+package io.github.k7t3.hpt;
+
+import javafx.beans.binding.StringExpression;
+import javafx.beans.property.SimpleDoubleProperty;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * カーソル座標ラベルの整形コストを、従来の{@code asString}/{@code concat}のバインディングと
+ * {@link CoordinateFormatter}で比較する。
+ * <p>
+ * {@code step}が1未満の場合は整数に丸めた値が変わらないサブピクセルの移動を表す。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoordinateFormatBenchmark {
+
+    @Param({"0.25", "1"})
+    public double step;
+
+    private SimpleDoubleProperty bindingX;
+
+    private SimpleDoubleProperty bindingY;
+
+    private StringExpression binding;
+
+    private SimpleDoubleProperty formatterX;
+
+    private SimpleDoubleProperty formatterY;
+
+    private CoordinateFormatter formatter;
+
+    private double position;
+
+    @Setup
+    public void setUp() {
+        bindingX = new SimpleDoubleProperty();
+        bindingY = new SimpleDoubleProperty();
+        binding = bindingX.asString("(%4.0f,").concat(bindingY.asString("%4.0f)"));
+
+        formatterX = new SimpleDoubleProperty();
+        formatterY = new SimpleDoubleProperty();
+        formatter = new CoordinateFormatter("(", 4, ",", ")", formatterX, formatterY);
+    }
+
+    private double next() {
+        position += step;
+        if (4000 < position) {
+            position = 0;
+        }
+        return position;
+    }
+
+    @Benchmark
+    public String bindingChain() {
+        double value = next();
+        bindingX.set(value);
+        bindingY.set(value);
+        // Labelと同様に無効化のたびに値を取り出す
+        return binding.get();
+    }
+
+    @Benchmark
+    public String coordinateFormatter() {
+        double value = next();
+        formatterX.set(value);
+        formatterY.set(value);
+        return formatter.getText();
+    }
+
+}
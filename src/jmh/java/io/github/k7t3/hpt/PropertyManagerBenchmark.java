@@ -0,0 +1,55 @@
+package io.github.k7t3.hpt;
+
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * プロパティファイルの保存と読み込みのコスト。一時ディレクトリのファイルに対して実行する。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyManagerBenchmark {
+
+    private Path directory;
+
+    private PropertyManager manager;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("hpt-bench");
+
+        SceneProperties properties = new SceneProperties();
+        properties.setGeometry(120, 240, 640, 480);
+        properties.setPaintColor(Color.color(0.1, 0.2, 0.3, 0.4));
+
+        manager = new PropertyManager(properties, directory.resolve("properties.xml"));
+        manager.save();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve("properties.xml"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void save() {
+        manager.save();
+    }
+
+    @Benchmark
+    public SceneProperties load() {
+        manager.load();
+        return manager.getProperties();
+    }
+
+}
@@ -0,0 +1,131 @@
+package io.github.k7t3.hpt;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.value.ObservableDoubleValue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SceneProperties}のアクセサと、{@link HoveringPointTrackerScene}と同等のバインディングへの伝播のコスト。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScenePropertiesBenchmark {
+
+    private SceneProperties properties;
+
+    /**
+     * Nodeのプロパティに相当するバインドされたプロパティ
+     */
+    private final List<DoubleProperty> bound = new ArrayList<>();
+
+    private double position;
+
+    @Setup
+    public void setUp() {
+        properties = new SceneProperties();
+
+        ObservableDoubleValue minX = properties.minXProperty();
+        ObservableDoubleValue minY = properties.minYProperty();
+        ObservableDoubleValue width = properties.widthProperty();
+        ObservableDoubleValue height = properties.heightProperty();
+        ObservableDoubleValue edge = properties.edgeWidthProperty();
+
+        // 矩形・エッジ・ノード・グリッド・ラベルの配置と同じ形のバインディング
+        List<ObservableDoubleValue> expressions = List.of(
+                properties.minXProperty().add(edge),
+                properties.minYProperty().add(edge),
+                properties.widthProperty().subtract(properties.edgeWidthProperty().multiply(2)),
+                properties.heightProperty().subtract(properties.edgeWidthProperty().multiply(2)),
+                properties.minXProperty().add(width),
+                properties.minYProperty().add(height),
+                properties.minXProperty().add(width).subtract(edge),
+                properties.minYProperty().add(height).subtract(edge),
+                properties.minXProperty().add(width).subtract(10),
+                minX,
+                minY
+        );
+        for (int i = 0; i < 4; i++) {
+            for (ObservableDoubleValue expression : expressions) {
+                DoubleProperty property = new SimpleDoubleProperty();
+                property.bind(expression);
+                bound.add(property);
+            }
+        }
+
+        // 描画範囲の変更を購読するリスナ(クリックポイントの削除に相当)
+        properties.minXProperty().addListener((ob, o, n) -> { });
+        properties.geometryProperty().addListener((ob, o, n) -> { });
+    }
+
+    private double next() {
+        position += 1;
+        if (1000 < position) {
+            position = 0;
+        }
+        return position;
+    }
+
+    /**
+     * レイアウト時の読み出しに相当する
+     */
+    private double layout() {
+        double sum = 0;
+        for (int i = 0; i < bound.size(); i++) {
+            sum += bound.get(i).get();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double getter() {
+        return properties.getMinX() + properties.getMinY() + properties.getWidth() + properties.getHeight();
+    }
+
+    @Benchmark
+    public double setter() {
+        properties.setWidth(300 + next());
+        return properties.getWidth();
+    }
+
+    @Benchmark
+    public double dragUnbatched() {
+        double value = next();
+        properties.setMinX(value);
+        properties.setMinY(value);
+        return layout();
+    }
+
+    @Benchmark
+    public double dragBatched() {
+        double value = next();
+        properties.setGeometry(value, value, properties.getWidth(), properties.getHeight());
+        return layout();
+    }
+
+    @Benchmark
+    public double stretchUnbatched() {
+        double value = next();
+        properties.setMinX(value);
+        properties.setWidth(1000 - value);
+        properties.setMinY(value);
+        properties.setHeight(1000 - value);
+        return layout();
+    }
+
+    @Benchmark
+    public double stretchBatched() {
+        double value = next();
+        properties.setGeometry(value, value, 1000 - value, 1000 - value);
+        return layout();
+    }
+
+}
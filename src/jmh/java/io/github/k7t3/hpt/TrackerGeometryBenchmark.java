@@ -0,0 +1,62 @@
+package io.github.k7t3.hpt;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HoveringPointTrackerScene}のドラッグ移動と伸長の計算コスト。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackerGeometryBenchmark {
+
+    private static final double SCENE_WIDTH = 3840;
+
+    private static final double SCENE_HEIGHT = 2160;
+
+    private SceneProperties properties;
+
+    private double position;
+
+    @Setup
+    public void setUp() {
+        properties = new SceneProperties();
+        properties.setGeometry(200, 200, 600, 400);
+        // Sceneと同様にリスナを登録しておく
+        properties.geometryProperty().addListener((ob, o, n) -> { });
+    }
+
+    private double next() {
+        position += 1;
+        if (500 < position) {
+            position = 0;
+        }
+        return position;
+    }
+
+    @Benchmark
+    public double dragClamp() {
+        double value = next() * 8;
+        return TrackerGeometry.dragMin(value, 50, 600, SCENE_WIDTH)
+                + TrackerGeometry.dragMin(value, 50, 400, SCENE_HEIGHT);
+    }
+
+    @Benchmark
+    public double stretchEdge() {
+        TrackerGeometry.stretch(properties, -1, -1, 1000 + next(), -1, 100, 100, SCENE_WIDTH, SCENE_HEIGHT);
+        return properties.getWidth();
+    }
+
+    @Benchmark
+    public double stretchCorner() {
+        double value = next();
+        TrackerGeometry.stretch(properties, 100 + value, 100 + value, -1, -1, 100, 100, SCENE_WIDTH, SCENE_HEIGHT);
+        return properties.getWidth();
+    }
+
+}
@@ -0,0 +1,194 @@
+package io.github.k7t3.hpt;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.value.ObservableValue;
+import javafx.util.Duration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SceneProperties}の変更を監視して自動的に保存するサービス。
+ * <p>
+ * 変更が{@link #getDelay()}の間続けて起きなかったときに、JavaFX Application Threadでプロパティのスナップショットを取り、
+ * バックグラウンドスレッドで{@link PropertyManager#write}により書き込む。
+ * 前回書き込んだときから値が変わったキーがなければ書き込まない。
+ */
+class AutosaveService {
+
+    /**
+     * 既定の待機時間
+     */
+    static final Duration DEFAULT_DELAY = Duration.seconds(2);
+
+    private final SceneProperties properties;
+
+    private final PropertyManager manager;
+
+    private final PauseTransition debounce;
+
+    private final InvalidationListener listener = this::invalidated;
+
+    private final List<Observable> observed = new ArrayList<>();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "hpt-autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 直近に書き込みを依頼したプロパティ。JavaFX Application Threadからのみ操作する
+     */
+    private Properties lastWritten;
+
+    private PerformanceMetrics performanceMetrics;
+
+    AutosaveService(SceneProperties properties, PropertyManager manager) {
+        this(properties, manager, DEFAULT_DELAY);
+    }
+
+    AutosaveService(SceneProperties properties, PropertyManager manager, Duration delay) {
+        this.properties = properties;
+        this.manager = manager;
+        this.debounce = new PauseTransition(delay);
+        this.debounce.setOnFinished(e -> flush());
+    }
+
+    Duration getDelay() {
+        return debounce.getDuration();
+    }
+
+    void setPerformanceMetrics(PerformanceMetrics performanceMetrics) {
+        this.performanceMetrics = performanceMetrics;
+    }
+
+    /**
+     * 監視を開始する。開始後の最初の{@link #flush()}は値に関わらず書き込む。
+     */
+    void start() {
+        if (!observed.isEmpty()) {
+            return;
+        }
+
+        observe(properties.screenProperty());
+        // 描画範囲は一回の操作で複数の値が変わるので、まとめて通知されるプロパティを監視する
+        observe(properties.geometryProperty());
+        observe(properties.edgeWidthProperty());
+        observe(properties.paintColorProperty());
+        observe(properties.gridColorProperty());
+        observe(properties.edgeColorProperty());
+        observe(properties.labelColorProperty());
+        observe(properties.clickPointColorProperty());
+        observe(properties.sceneBorderColorProperty());
+    }
+
+    private void observe(Observable observable) {
+        observable.addListener(listener);
+        observed.add(observable);
+    }
+
+    private void invalidated(Observable observable) {
+        // 値を読み出して次の変更でも通知されるようにする
+        if (observable instanceof ObservableValue<?> value) {
+            value.getValue();
+        }
+        debounce.playFromStart();
+    }
+
+    /**
+     * 変更があれば待機時間を待たずに保存する。書き込みはバックグラウンドスレッドで行う。
+     */
+    void flush() {
+        debounce.stop();
+
+        if (executor.isShutdown()) {
+            return;
+        }
+
+        Properties snapshot = manager.snapshot();
+        if (!hasChanges(lastWritten, snapshot)) {
+            return;
+        }
+        lastWritten = snapshot;
+
+        executor.execute(() -> write(snapshot));
+    }
+
+    private void write(Properties snapshot) {
+        long start = System.nanoTime();
+
+        try {
+
+            manager.write(snapshot);
+
+        } catch (IOException e) {
+
+            e.printStackTrace();
+
+            // 次の変更で改めて書き込むように
+            Platform.runLater(() -> {
+                if (lastWritten == snapshot) {
+                    lastWritten = null;
+                }
+            });
+            return;
+
+        }
+
+        PerformanceMetrics metrics = performanceMetrics;
+        if (metrics != null) {
+            metrics.recordPersist(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 監視を終了し、保存していない変更を書き込む。
+     * @param timeoutMillis 書き込みの完了を待つ最大時間
+     */
+    void close(long timeoutMillis) {
+        for (Observable observable : observed) {
+            observable.removeListener(listener);
+        }
+        observed.clear();
+
+        flush();
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                System.out.println("autosave did not finish in " + timeoutMillis + "ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 前回書き込んだときから値が変わったキーがあるか。
+     */
+    static boolean hasChanges(Properties previous, Properties current) {
+        if (previous == null) {
+            return true;
+        }
+        if (previous.size() != current.size()) {
+            return true;
+        }
+        for (String key : current.stringPropertyNames()) {
+            if (!Objects.equals(previous.getProperty(key), current.getProperty(key))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,177 @@
+package io.github.k7t3.hpt;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ * クリックポイントを単一のCanvasに描画するレイヤ。
+ * <p>
+ * ポイントごとにNodeを生成しないため、ポイント数が増えてもシーングラフの大きさは変わらない。
+ * Canvasは{@link #setView}で指定した領域だけを覆い、その左上を原点として描画する。
+ * <p>
+ * {@link #setSnapshotEnabled(boolean)}で有効にしている間は、ポイントが変わったパルスごとに{@link ClickPointSnapshot}を作成し、
+ * 他のスレッドから参照できるようにする。スナップショットの作成はポイント数に比例するため、参照する必要がないときは無効にしておく。
+ */
+class ClickPointLayer extends Canvas {
+
+    private final SceneProperties properties;
+
+    private final double radius;
+
+    private final ClickPoints points = new ClickPoints();
+
+    private final PulseCoalescedTask snapshotTask = new PulseCoalescedTask(this::publishSnapshot);
+
+    private volatile ClickPointSnapshot snapshot = ClickPointSnapshot.EMPTY;
+
+    private boolean snapshotEnabled = false;
+
+    /**
+     * Canvasが覆う領域の左上の座標
+     */
+    private double viewMinX = 0;
+
+    private double viewMinY = 0;
+
+    ClickPointLayer(SceneProperties properties, double radius) {
+        this.properties = properties;
+        this.radius = radius;
+
+        setMouseTransparent(true);
+
+        // 色が変わったときはすべて描き直す
+        properties.clickPointColorProperty().addListener((ob, o, n) -> redraw());
+    }
+
+    /**
+     * Canvasが覆う領域を設定する。変わったときは領域にかかるポイントだけを描き直す。
+     * <p>
+     * 座標はクリックポイントと同じくディスプレイの左上を原点とする。Canvasの大きさは領域の大きさになるため、
+     * ウインドウに表示される領域だけを指定すればディスプレイ全体の大きさのテクスチャを持たずに済む。
+     */
+    void setView(double minX, double minY, double width, double height) {
+        if (viewMinX == minX && viewMinY == minY && getWidth() == width && getHeight() == height) {
+            return;
+        }
+        viewMinX = minX;
+        viewMinY = minY;
+        setTranslateX(minX);
+        setTranslateY(minY);
+        setWidth(width);
+        setHeight(height);
+        redraw();
+    }
+
+    /**
+     * 保持しているクリックポイント。
+     */
+    ClickPoints getPoints() {
+        return points;
+    }
+
+    /**
+     * 直近のパルスの時点のクリックポイント。任意のスレッドから呼び出せる。
+     * スナップショットの作成が無効のときは常に空。
+     */
+    ClickPointSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * スナップショットを作成するか設定する。有効にしたときは即座に現在のポイントのスナップショットを作成する。
+     */
+    void setSnapshotEnabled(boolean enabled) {
+        if (snapshotEnabled == enabled) {
+            return;
+        }
+        snapshotEnabled = enabled;
+        snapshotTask.cancel();
+        if (enabled) {
+            publishSnapshot();
+        } else {
+            snapshot = ClickPointSnapshot.EMPTY;
+        }
+    }
+
+    private void requestSnapshot() {
+        if (snapshotEnabled) {
+            snapshotTask.request();
+        }
+    }
+
+    private void publishSnapshot() {
+        snapshot = points.snapshot();
+    }
+
+    /**
+     * クリックポイントを追加し、追加したポイントのみを描画する。
+     * @param x X座標
+     * @param y Y座標
+     */
+    void add(double x, double y) {
+        points.add(x, y);
+        requestSnapshot();
+
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.setFill(properties.getClickPointColor());
+        fillPoint(gc, x, y);
+    }
+
+    /**
+     * 直近のクリックポイントを削除する。
+     * @return 削除したときはtrue
+     */
+    boolean removeLast() {
+        if (points.removeLast()) {
+            requestSnapshot();
+            redraw();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 描画範囲と交差しないクリックポイントを削除する。
+     * @return 削除したポイントの数
+     */
+    int retainIntersecting(double minX, double minY, double width, double height) {
+        int removed = points.retainIntersecting(minX, minY, width, height, radius);
+        if (0 < removed) {
+            requestSnapshot();
+            redraw();
+        }
+        return removed;
+    }
+
+    /**
+     * すべてのクリックポイントを削除する。
+     */
+    void clear() {
+        points.clear();
+        snapshotTask.cancel();
+        snapshot = ClickPointSnapshot.EMPTY;
+        getGraphicsContext2D().clearRect(0, 0, getWidth(), getHeight());
+    }
+
+    private void redraw() {
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, getWidth(), getHeight());
+        gc.setFill(properties.getClickPointColor());
+
+        // 領域にかかるポイントだけをグリッドから取り出す
+        points.forEachIn(viewMinX - radius, viewMinY - radius,
+                viewMinX + getWidth() + radius, viewMinY + getHeight() + radius,
+                (x, y) -> fillPoint(gc, x, y));
+    }
+
+    private void fillPoint(GraphicsContext gc, double x, double y) {
+        double localX = x - viewMinX;
+        double localY = y - viewMinY;
+        // 領域の外のポイントは描画しない
+        if (localX + radius < 0 || localY + radius < 0 || getWidth() < localX - radius || getHeight() < localY - radius) {
+            return;
+        }
+        gc.fillOval(localX - radius, localY - radius, radius * 2, radius * 2);
+    }
+
+}
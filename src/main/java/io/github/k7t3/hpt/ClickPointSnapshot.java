@@ -0,0 +1,72 @@
+package io.github.k7t3.hpt;
+
+/**
+ * ある時点のクリックポイントの座標。
+ * <p>
+ * 追加した順に座標を詰めた配列の複製を保持する不変のオブジェクトなので、任意のスレッドから参照できる。
+ */
+public final class ClickPointSnapshot {
+
+    /**
+     * 座標を受け取るコールバック。
+     */
+    @FunctionalInterface
+    public interface PointConsumer {
+        void accept(double x, double y);
+    }
+
+    static final ClickPointSnapshot EMPTY = new ClickPointSnapshot(new double[0], new double[0]);
+
+    private final double[] xs;
+
+    private final double[] ys;
+
+    /**
+     * @param xs X座標。呼び出し元は以降この配列を変更しないこと
+     * @param ys Y座標。呼び出し元は以降この配列を変更しないこと
+     */
+    ClickPointSnapshot(double[] xs, double[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("length mismatch: " + xs.length + " != " + ys.length);
+        }
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    public int size() {
+        return xs.length;
+    }
+
+    public double getX(int index) {
+        return xs[index];
+    }
+
+    public double getY(int index) {
+        return ys[index];
+    }
+
+    /**
+     * 指定した矩形に含まれる座標を追加した順に通知する。矩形の右端と下端は含まない。
+     * @param minX 矩形の最小X
+     * @param minY 矩形の最小Y
+     * @param width 矩形の幅
+     * @param height 矩形の高さ
+     * @param consumer コールバック
+     * @return 通知した座標の数
+     */
+    public int forEachIn(double minX, double minY, double width, double height, PointConsumer consumer) {
+        double maxX = minX + width;
+        double maxY = minY + height;
+        int count = 0;
+        for (int i = 0; i < xs.length; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            if (minX <= x && x < maxX && minY <= y && y < maxY) {
+                consumer.accept(x, y);
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
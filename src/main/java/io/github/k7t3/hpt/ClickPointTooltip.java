@@ -0,0 +1,99 @@
+package io.github.k7t3.hpt;
+
+import javafx.geometry.Point2D;
+import javafx.scene.Scene;
+import javafx.scene.control.Tooltip;
+import javafx.scene.text.Font;
+import javafx.stage.Window;
+
+/**
+ * カーソル位置にあるクリックポイントの座標をポップアップする単一のツールチップ。
+ * <p>
+ * Sceneに登録した一つのハンドラから呼び出し、{@link ClickPoints#findNearest}でポイントを検索するため、
+ * ポイントの数に関わらず処理の重さは変わらない。ツールチップの文字列と位置は、
+ * カーソルが別のポイントに移ったときだけ更新する。イベントオブジェクトは保持しない。
+ */
+class ClickPointTooltip {
+
+    private static final double OFFSET_Y = 10;
+
+    private final Scene scene;
+
+    private final ClickPoints points;
+
+    private final double radius;
+
+    private Tooltip tooltip;
+
+    /**
+     * 表示中のポイントがあるか
+     */
+    private boolean showing = false;
+
+    private double shownX = 0;
+
+    private double shownY = 0;
+
+    ClickPointTooltip(Scene scene, ClickPoints points, double radius) {
+        this.scene = scene;
+        this.points = points;
+        this.radius = radius;
+    }
+
+    /**
+     * カーソル位置に応じてツールチップを表示・非表示にする。
+     * @param sceneX Scene上のX座標
+     * @param sceneY Scene上のY座標
+     */
+    void update(double sceneX, double sceneY) {
+        int slot = points.findNearest(sceneX, sceneY, radius);
+
+        if (slot < 0) {
+            hide();
+            return;
+        }
+
+        double x = points.getX(slot);
+        double y = points.getY(slot);
+
+        // 同じポイントの上を動いている間は何もしない
+        if (showing && x == shownX && y == shownY) {
+            return;
+        }
+
+        Window window = scene.getWindow();
+        if (window == null) {
+            return;
+        }
+
+        // rootの座標はディスプレイの左上を原点とするため、ウインドウの位置に関わらずスクリーン座標に変換できる
+        Point2D screen = scene.getRoot().localToScreen(x, y + OFFSET_Y);
+        if (screen == null) {
+            return;
+        }
+
+        if (tooltip == null) {
+            tooltip = new Tooltip();
+            tooltip.setFont(Font.font("monospaced", 13));
+        }
+
+        tooltip.setText(CoordinateFormatter.formatPoint(x, y));
+        tooltip.show(window, screen.getX(), screen.getY());
+
+        showing = true;
+        shownX = x;
+        shownY = y;
+    }
+
+    /**
+     * ツールチップを非表示にする。ポイントが削除されたときにも呼び出す。
+     */
+    void hide() {
+        if (!showing) {
+            return;
+        }
+        showing = false;
+        tooltip.hide();
+    }
+
+}
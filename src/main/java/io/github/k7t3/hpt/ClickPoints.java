@@ -0,0 +1,482 @@
+package io.github.k7t3.hpt;
+
+import java.util.Arrays;
+
+/**
+ * クリックポイントの座標を保持するコレクション。
+ * <p>
+ * 座標はプリミティブ配列のスロットで保持し、ポイントごとのオブジェクトは生成しない。
+ * 加えて各スロットを一様グリッドで索引付けし、範囲外ポイントの削除と
+ * 近傍検索ではグリッドのセル単位で走査範囲を絞り込む。
+ * JavaFX Application Threadからのみ操作されることを前提とする。
+ */
+final class ClickPoints {
+
+    /**
+     * 座標を受け取るコールバック。
+     */
+    @FunctionalInterface
+    interface PointConsumer {
+        void accept(double x, double y);
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final int INITIAL_CELL_CAPACITY = 4;
+
+    /**
+     * グリッドの一辺あたりの最大セル数。これを超える座標は端のセルに入れる。
+     */
+    private static final int MAX_CELLS_PER_AXIS = 1024;
+
+    /**
+     * グリッドのセルの一辺の大きさ。
+     */
+    private final double cellSize;
+
+    private double[] xs = new double[INITIAL_CAPACITY];
+
+    private double[] ys = new double[INITIAL_CAPACITY];
+
+    /**
+     * スロットが所属するセルのインデックス。削除済みのスロットは-1。
+     */
+    private int[] slotCells = new int[INITIAL_CAPACITY];
+
+    /**
+     * 使用済みスロットの上限。
+     */
+    private int slotLimit = 0;
+
+    /**
+     * 削除されていないポイントの数。
+     */
+    private int size = 0;
+
+    private int columns = 0;
+
+    private int rows = 0;
+
+    private int[][] cellSlots = new int[0][];
+
+    private int[] cellSizes = new int[0];
+
+    /**
+     * セルの内容が有効な世代。{@link #generation}と一致しないセルは空として扱う。
+     */
+    private int[] cellGenerations = new int[0];
+
+    private int generation = 0;
+
+    /**
+     * ポイントを含む可能性があるセルの範囲。
+     */
+    private int occupiedMinColumn;
+    private int occupiedMinRow;
+    private int occupiedMaxColumn;
+    private int occupiedMaxRow;
+
+    ClickPoints() {
+        this(64);
+    }
+
+    ClickPoints(double cellSize) {
+        this.cellSize = cellSize;
+        resetOccupied();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double getX(int slot) {
+        return xs[slot];
+    }
+
+    public double getY(int slot) {
+        return ys[slot];
+    }
+
+    /**
+     * 追加した順にすべてのポイントを通知する。
+     * @param consumer コールバック
+     */
+    public void forEach(PointConsumer consumer) {
+        for (int i = 0; i < slotLimit; i++) {
+            if (0 <= slotCells[i]) {
+                consumer.accept(xs[i], ys[i]);
+            }
+        }
+    }
+
+    /**
+     * 指定した範囲(境界を含む)にあるポイントを通知する。範囲と重なるセルのポイントのみを判定する。
+     * <p>
+     * 通知する順序は追加した順とは限らない。
+     * @param minX 範囲の最小X
+     * @param minY 範囲の最小Y
+     * @param maxX 範囲の最大X
+     * @param maxY 範囲の最大Y
+     * @param consumer コールバック
+     */
+    public void forEachIn(double minX, double minY, double maxX, double maxY, PointConsumer consumer) {
+        if (size == 0) {
+            return;
+        }
+
+        int minColumn = Math.max(occupiedMinColumn, column(minX));
+        int minRow = Math.max(occupiedMinRow, row(minY));
+        int maxColumn = Math.min(occupiedMaxColumn, column(maxX));
+        int maxRow = Math.min(occupiedMaxRow, row(maxY));
+
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                int cell = column + row * columns;
+                int count = cellSize(cell);
+                int[] slots = cellSlots[cell];
+
+                for (int i = 0; i < count; i++) {
+                    int slot = slots[i];
+                    double x = xs[slot];
+                    double y = ys[slot];
+                    if (minX <= x && x <= maxX && minY <= y && y <= maxY) {
+                        consumer.accept(x, y);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 現在の座標を複製した不変のスナップショットを作成する。
+     */
+    ClickPointSnapshot snapshot() {
+        if (size == 0) {
+            return ClickPointSnapshot.EMPTY;
+        }
+        double[] snapshotXs = new double[size];
+        double[] snapshotYs = new double[size];
+        int index = 0;
+        for (int i = 0; i < slotLimit; i++) {
+            if (0 <= slotCells[i]) {
+                snapshotXs[index] = xs[i];
+                snapshotYs[index] = ys[i];
+                index++;
+            }
+        }
+        return new ClickPointSnapshot(snapshotXs, snapshotYs);
+    }
+
+    /**
+     * 末尾に座標を追加する。
+     * @param x X座標
+     * @param y Y座標
+     * @return 追加した座標のスロット
+     */
+    public int add(double x, double y) {
+        if (slotLimit == xs.length) {
+            if (size < slotLimit / 2) {
+                compact();
+            } else {
+                int capacity = slotLimit + (slotLimit >> 1);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                slotCells = Arrays.copyOf(slotCells, capacity);
+            }
+        }
+
+        int column = column(x);
+        int row = row(y);
+        ensureGrid(column, row);
+
+        int slot = slotLimit++;
+        xs[slot] = x;
+        ys[slot] = y;
+        addToCell(column + row * columns, slot);
+        size++;
+
+        occupiedMinColumn = Math.min(occupiedMinColumn, column);
+        occupiedMinRow = Math.min(occupiedMinRow, row);
+        occupiedMaxColumn = Math.max(occupiedMaxColumn, column);
+        occupiedMaxRow = Math.max(occupiedMaxRow, row);
+
+        return slot;
+    }
+
+    /**
+     * 直近に追加した座標を削除する。
+     * @return 削除したときはtrue
+     */
+    public boolean removeLast() {
+        if (size == 0) {
+            return false;
+        }
+        remove(slotLimit - 1);
+        return true;
+    }
+
+    /**
+     * すべての座標を削除する。配列とセルは世代を進めて再利用するため走査は発生しない。
+     */
+    public void clear() {
+        slotLimit = 0;
+        size = 0;
+        generation++;
+        resetOccupied();
+    }
+
+    /**
+     * 一辺が{@code pointSize}の正方形として見たときに、指定した矩形と交差しない座標を削除する。
+     * <p>
+     * 矩形に完全に含まれるセルは走査せず、境界をまたぐセルのポイントのみを判定する。
+     * @param minX 矩形の最小X
+     * @param minY 矩形の最小Y
+     * @param width 矩形の幅
+     * @param height 矩形の高さ
+     * @param pointSize 座標の大きさ
+     * @return 削除した座標の数
+     */
+    public int retainIntersecting(double minX, double minY, double width, double height, double pointSize) {
+        if (size == 0) {
+            return 0;
+        }
+
+        // ポイントの座標がこの範囲(下限は含まない)にあれば矩形と交差する
+        double lowerX = minX - pointSize;
+        double lowerY = minY - pointSize;
+        double upperX = minX + width;
+        double upperY = minY + height;
+
+        int before = size;
+
+        for (int row = occupiedMinRow; row <= occupiedMaxRow; row++) {
+            for (int column = occupiedMinColumn; column <= occupiedMaxColumn; column++) {
+                int cell = column + row * columns;
+                int count = cellSize(cell);
+                if (count == 0) {
+                    continue;
+                }
+
+                boolean insideX = lowerX < cellMinX(column) && cellMaxX(column) <= upperX;
+                boolean insideY = lowerY < cellMinY(row) && cellMaxY(row) <= upperY;
+                if (insideX && insideY) {
+                    continue;
+                }
+
+                int[] slots = cellSlots[cell];
+                for (int i = count - 1; 0 <= i; i--) {
+                    int slot = slots[i];
+                    double x = xs[slot];
+                    double y = ys[slot];
+                    if (!(lowerX < x && lowerY < y && x < upperX && y < upperY)) {
+                        remove(slot);
+                    }
+                }
+            }
+        }
+
+        // 残ったポイントは矩形の周辺にしか存在しない
+        if (size == 0) {
+            resetOccupied();
+        } else {
+            occupiedMinColumn = Math.max(occupiedMinColumn, column(lowerX));
+            occupiedMinRow = Math.max(occupiedMinRow, row(lowerY));
+            occupiedMaxColumn = Math.min(occupiedMaxColumn, column(upperX));
+            occupiedMaxRow = Math.min(occupiedMaxRow, row(upperY));
+        }
+
+        return before - size;
+    }
+
+    /**
+     * 指定した座標から半径{@code radius}以内にある最も近い座標のスロットを返す。
+     * <p>
+     * 検索範囲と重なるセルのポイントのみを判定する。
+     * @param x X座標
+     * @param y Y座標
+     * @param radius 検索する半径
+     * @return 座標のスロット。見つからないときは-1
+     */
+    public int findNearest(double x, double y, double radius) {
+        if (size == 0) {
+            return -1;
+        }
+
+        int minColumn = Math.max(occupiedMinColumn, column(x - radius));
+        int minRow = Math.max(occupiedMinRow, row(y - radius));
+        int maxColumn = Math.min(occupiedMaxColumn, column(x + radius));
+        int maxRow = Math.min(occupiedMaxRow, row(y + radius));
+
+        int nearest = -1;
+        double nearestDistance = radius * radius;
+
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                int cell = column + row * columns;
+                int count = cellSize(cell);
+                int[] slots = cellSlots[cell];
+
+                for (int i = 0; i < count; i++) {
+                    int slot = slots[i];
+                    double dx = xs[slot] - x;
+                    double dy = ys[slot] - y;
+                    double distance = dx * dx + dy * dy;
+
+                    // 同じ距離なら後から追加したポイントを優先
+                    if (distance < nearestDistance || (distance == nearestDistance && nearest < slot)) {
+                        nearest = slot;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+        }
+
+        return nearest;
+    }
+
+    private void remove(int slot) {
+        int cell = slotCells[slot];
+        int[] slots = cellSlots[cell];
+        int count = cellSizes[cell];
+        for (int i = 0; i < count; i++) {
+            if (slots[i] == slot) {
+                slots[i] = slots[count - 1];
+                cellSizes[cell] = count - 1;
+                break;
+            }
+        }
+
+        slotCells[slot] = -1;
+        size--;
+
+        // 末尾の削除済みスロットは再利用する
+        while (0 < slotLimit && slotCells[slotLimit - 1] < 0) {
+            slotLimit--;
+        }
+    }
+
+    /**
+     * 削除済みのスロットを詰めて、グリッドを再構築する。
+     */
+    private void compact() {
+        int compacted = 0;
+        for (int i = 0; i < slotLimit; i++) {
+            if (0 <= slotCells[i]) {
+                xs[compacted] = xs[i];
+                ys[compacted] = ys[i];
+                slotCells[compacted] = slotCells[i];
+                compacted++;
+            }
+        }
+        slotLimit = compacted;
+        rebuildCells();
+    }
+
+    /**
+     * 指定したセルが収まるようにグリッドを拡張する。
+     */
+    private void ensureGrid(int column, int row) {
+        if (column < columns && row < rows) {
+            return;
+        }
+
+        columns = Math.min(MAX_CELLS_PER_AXIS, Math.max(columns, column + 1 + (column >> 1)));
+        rows = Math.min(MAX_CELLS_PER_AXIS, Math.max(rows, row + 1 + (row >> 1)));
+
+        int cells = columns * rows;
+        cellSlots = new int[cells][];
+        cellSizes = new int[cells];
+        cellGenerations = new int[cells];
+
+        rebuildCells();
+    }
+
+    /**
+     * 削除されていないすべてのスロットをセルへ振り分けなおす。
+     */
+    private void rebuildCells() {
+        generation++;
+        resetOccupied();
+
+        for (int i = 0; i < slotLimit; i++) {
+            if (slotCells[i] < 0) {
+                continue;
+            }
+            int column = column(xs[i]);
+            int row = row(ys[i]);
+            addToCell(column + row * columns, i);
+
+            occupiedMinColumn = Math.min(occupiedMinColumn, column);
+            occupiedMinRow = Math.min(occupiedMinRow, row);
+            occupiedMaxColumn = Math.max(occupiedMaxColumn, column);
+            occupiedMaxRow = Math.max(occupiedMaxRow, row);
+        }
+    }
+
+    private void addToCell(int cell, int slot) {
+        int count = cellSize(cell);
+        int[] slots = cellSlots[cell];
+
+        if (slots == null) {
+            slots = cellSlots[cell] = new int[INITIAL_CELL_CAPACITY];
+        } else if (count == slots.length) {
+            slots = cellSlots[cell] = Arrays.copyOf(slots, count * 2);
+        }
+
+        slots[count] = slot;
+        cellSizes[cell] = count + 1;
+        cellGenerations[cell] = generation;
+        slotCells[slot] = cell;
+    }
+
+    private int cellSize(int cell) {
+        return cellGenerations[cell] == generation ? cellSizes[cell] : 0;
+    }
+
+    private void resetOccupied() {
+        occupiedMinColumn = Integer.MAX_VALUE;
+        occupiedMinRow = Integer.MAX_VALUE;
+        occupiedMaxColumn = -1;
+        occupiedMaxRow = -1;
+    }
+
+    private int column(double x) {
+        return index(x, columns);
+    }
+
+    private int row(double y) {
+        return index(y, rows);
+    }
+
+    private int index(double value, int count) {
+        int index = (int) Math.floor(value / cellSize);
+        if (index < 0) {
+            return 0;
+        }
+        // グリッドの生成前は拡張後の大きさを判定するため上限のみ適用
+        return Math.min(index, Math.max(count, MAX_CELLS_PER_AXIS) - 1);
+    }
+
+    // 端のセルはグリッド外の座標も含むため境界を無限大として扱う
+
+    private double cellMinX(int column) {
+        return column == 0 ? Double.NEGATIVE_INFINITY : column * cellSize;
+    }
+
+    private double cellMaxX(int column) {
+        return column == columns - 1 ? Double.POSITIVE_INFINITY : (column + 1) * cellSize;
+    }
+
+    private double cellMinY(int row) {
+        return row == 0 ? Double.NEGATIVE_INFINITY : row * cellSize;
+    }
+
+    private double cellMaxY(int row) {
+        return row == rows - 1 ? Double.POSITIVE_INFINITY : (row + 1) * cellSize;
+    }
+
+}
@@ -0,0 +1,198 @@
+package io.github.k7t3.hpt;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.value.ObservableDoubleValue;
+
+/**
+ * 座標を整数に丸めて文字列に整形するフォーマッタ。
+ * <p>
+ * 監視している値を整数に丸めた結果が変わったときだけ文字列を生成し、{@link #textProperty()}を更新する。
+ * 整形には再利用する文字バッファを使用するため、{@link String#format}のような中間オブジェクトは生成しない。
+ * <p>
+ * 例えば{@code new CoordinateFormatter("(", 4, ",", ")", x, y)}は{@code String.format("(%4.0f,%4.0f)", x, y)}と同じ文字列になる。
+ */
+final class CoordinateFormatter {
+
+    /**
+     * longの最大桁数と符号
+     */
+    private static final int MAX_DIGITS = 20;
+
+    private final String prefix;
+
+    private final int width;
+
+    private final String separator;
+
+    private final String suffix;
+
+    private final ObservableDoubleValue[] values;
+
+    /**
+     * 直近に整形した値
+     */
+    private final long[] current;
+
+    /**
+     * 直近に整形した値が丸めると0になる負の値だったか
+     */
+    private final boolean[] currentNegativeZero;
+
+    private final char[] buffer;
+
+    private final ReadOnlyStringWrapper text = new ReadOnlyStringWrapper();
+
+    private final InvalidationListener listener = this::invalidated;
+
+    /**
+     * @param prefix 先頭に付与する文字列
+     * @param width 数値の最小幅。足りない場合は左側を空白で埋める
+     * @param separator 数値の区切り文字列
+     * @param suffix 末尾に付与する文字列
+     * @param values 整形する値
+     */
+    CoordinateFormatter(String prefix, int width, String separator, String suffix, ObservableDoubleValue... values) {
+        this.prefix = prefix;
+        this.width = width;
+        this.separator = separator;
+        this.suffix = suffix;
+        this.values = values.clone();
+        this.current = new long[values.length];
+        this.currentNegativeZero = new boolean[values.length];
+        this.buffer = new char[prefix.length() + suffix.length()
+                + separator.length() * Math.max(0, values.length - 1)
+                + Math.max(width, MAX_DIGITS) * values.length];
+
+        for (ObservableDoubleValue value : this.values) {
+            value.addListener(listener);
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            double value = values[i].get();
+            current[i] = round(value);
+            currentNegativeZero[i] = isNegativeZero(value);
+        }
+        text.set(format());
+    }
+
+    public ReadOnlyStringProperty textProperty() {
+        return text.getReadOnlyProperty();
+    }
+
+    public String getText() {
+        return text.get();
+    }
+
+    private void invalidated(Observable observable) {
+        boolean changed = false;
+        for (int i = 0; i < values.length; i++) {
+            double value = values[i].get();
+            long rounded = round(value);
+            boolean negativeZero = isNegativeZero(value);
+            if (rounded != current[i] || negativeZero != currentNegativeZero[i]) {
+                current[i] = rounded;
+                currentNegativeZero[i] = negativeZero;
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            text.set(format());
+        }
+    }
+
+    private String format() {
+        int length = 0;
+        length = append(buffer, length, prefix);
+        for (int i = 0; i < current.length; i++) {
+            if (0 < i) {
+                length = append(buffer, length, separator);
+            }
+            length = appendLong(buffer, length, current[i], currentNegativeZero[i], width);
+        }
+        length = append(buffer, length, suffix);
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * {@code String.format("(%4.0f,%4.0f)", x, y)}と同じ文字列を生成する。
+     */
+    static String formatPoint(double x, double y) {
+        char[] buffer = new char[3 + MAX_DIGITS * 2];
+        int length = 0;
+        buffer[length++] = '(';
+        length = appendLong(buffer, length, round(x), isNegativeZero(x), 4);
+        buffer[length++] = ',';
+        length = appendLong(buffer, length, round(y), isNegativeZero(y), 4);
+        buffer[length++] = ')';
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * {@code %.0f}と同様に四捨五入(0から遠い方向)で整数に丸める。
+     * <p>
+     * {@code Math.floor(value + 0.5)}は加算で丸め誤差が生じ、0.49999999999999994を1にしてしまうため、
+     * 整数部を除いた端数を0.5と直接比較する。端数の計算に誤差は生じない。
+     */
+    static long round(double value) {
+        double abs = Math.abs(value);
+        double integer = Math.floor(abs);
+        long rounded = (long) integer;
+        if (0.5 <= abs - integer) {
+            rounded++;
+        }
+        return value < 0 ? -rounded : rounded;
+    }
+
+    /**
+     * 丸めると0になる負の値(-0.0を含む)か。{@code %.0f}はこのとき"-0"と整形する。
+     */
+    static boolean isNegativeZero(double value) {
+        return Math.copySign(1.0, value) < 0 && round(value) == 0;
+    }
+
+    private static int append(char[] buffer, int offset, String s) {
+        s.getChars(0, s.length(), buffer, offset);
+        return offset + s.length();
+    }
+
+    /**
+     * 整数を十進数で書き込む。
+     * @param buffer 書き込み先
+     * @param offset 書き込みを開始する位置
+     * @param value 値
+     * @param negativeZero 値が0のときに符号を付けるか
+     * @param width 最小幅。足りない場合は左側を空白で埋める
+     * @return 書き込んだ後の位置
+     */
+    static int appendLong(char[] buffer, int offset, long value, boolean negativeZero, int width) {
+        boolean negative = value < 0 || (value == 0 && negativeZero);
+        // Long.MIN_VALUEでも溢れないよう負数で計算する
+        long remaining = negative ? value : -value;
+
+        int digits = 1;
+        for (long v = remaining / 10; v != 0; v /= 10) {
+            digits++;
+        }
+        int length = digits + (negative ? 1 : 0);
+
+        int position = offset;
+        for (int i = length; i < width; i++) {
+            buffer[position++] = ' ';
+        }
+        if (negative) {
+            buffer[position++] = '-';
+        }
+
+        int end = position + digits;
+        for (int i = end - 1; position <= i; i--) {
+            buffer[i] = (char) ('0' - (remaining % 10));
+            remaining /= 10;
+        }
+        return end;
+    }
+
+}
@@ -0,0 +1,330 @@
+package io.github.k7t3.hpt;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * カーソルが留まっていた時間をヒートマップとして表示するレイヤ。
+ * <p>
+ * 描画面を一辺{@code cellSize}のセルに分けた{@code int[]}のグリッドに、カーソルが各セルに留まっていたミリ秒を積算する。
+ * グリッドは1セルを1ピクセルとする{@link WritableImage}に描画し、{@link ImageView}で描画面の大きさに拡大して表示する。
+ * 積算は{@link #record}でマウスイベントごとに行い、画像はパルスごとに一度だけ、値が変わった行のみを書き換える。
+ * 表示するのは{@link #setView}で指定した領域にかかるセルだけで、ノードの大きさもその領域に合わせる。
+ * 色は{@link #SATURATION_MILLIS}で最も濃くなる固定の尺度で決めるため、他のセルの値が変わっても書き直す必要はない。
+ */
+class DwellHeatmapLayer extends ImageView {
+
+    /**
+     * セルの一辺の既定の大きさ
+     */
+    static final int DEFAULT_CELL_SIZE = 8;
+
+    /**
+     * 最も濃い色になる滞留時間
+     */
+    static final int SATURATION_MILLIS = 3000;
+
+    /**
+     * 滞留時間から色への変換表の大きさ
+     */
+    private static final int LEVELS = 256;
+
+    private static final int[] PALETTE = createPalette();
+
+    private final int cellSize;
+
+    private final PulseCoalescedTask renderTask = new PulseCoalescedTask(this::render);
+
+    private int columns = 0;
+
+    private int rows = 0;
+
+    /**
+     * セルごとの滞留時間(ミリ秒)
+     */
+    private int[] dwell = new int[0];
+
+    /**
+     * 画像に書き込む1パルス分の画素。値が変わった行だけを変換する
+     */
+    private int[] pixels = new int[0];
+
+    private WritableImage image;
+
+    /**
+     * 値が変わった行のビット集合
+     */
+    private long[] dirtyRows = new long[0];
+
+    private boolean dirty = false;
+
+    /**
+     * 直前のイベントのセル。範囲外のときは-1
+     */
+    private int lastCell = -1;
+
+    private long lastTimestamp = 0;
+
+    /**
+     * 1ミリ秒に満たない滞留時間の端数
+     */
+    private long remainderNanos = 0;
+
+    /**
+     * 表示する領域。既定は描画面全体
+     */
+    private double viewMinX = 0;
+
+    private double viewMinY = 0;
+
+    private double viewWidth = Double.POSITIVE_INFINITY;
+
+    private double viewHeight = Double.POSITIVE_INFINITY;
+
+    DwellHeatmapLayer(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+
+        setMouseTransparent(true);
+        // 拡大したときにセルの境界をぼかさない
+        setSmooth(false);
+    }
+
+    int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * 描画面の大きさを設定する。大きさが変わったときは積算した値を消去する。
+     * @param width 幅
+     * @param height 高さ
+     */
+    void setSurfaceSize(double width, double height) {
+        int columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        int rows = Math.max(1, (int) Math.ceil(height / cellSize));
+
+        if (columns == this.columns && rows == this.rows) {
+            return;
+        }
+
+        this.columns = columns;
+        this.rows = rows;
+        dwell = new int[columns * rows];
+        pixels = new int[columns * rows];
+        dirtyRows = new long[(rows + 63) >>> 6];
+        image = new WritableImage(columns, rows);
+        setImage(image);
+
+        renderTask.cancel();
+        resetDirty();
+        lastCell = -1;
+
+        updateViewport();
+    }
+
+    /**
+     * 表示する領域を設定する。座標は描画面の左上を原点とする。
+     */
+    void setView(double minX, double minY, double width, double height) {
+        viewMinX = minX;
+        viewMinY = minY;
+        viewWidth = width;
+        viewHeight = height;
+        updateViewport();
+    }
+
+    /**
+     * 表示する領域にかかるセルだけを表示し、その位置に配置する。
+     */
+    private void updateViewport() {
+        if (image == null) {
+            return;
+        }
+
+        int minColumn = Math.max(0, Math.min(columns - 1, (int) Math.floor(viewMinX / cellSize)));
+        int minRow = Math.max(0, Math.min(rows - 1, (int) Math.floor(viewMinY / cellSize)));
+        int maxColumn = Math.max(minColumn + 1, Math.min(columns, (int) Math.ceil((viewMinX + viewWidth) / cellSize)));
+        int maxRow = Math.max(minRow + 1, Math.min(rows, (int) Math.ceil((viewMinY + viewHeight) / cellSize)));
+
+        setViewport(new Rectangle2D(minColumn, minRow, maxColumn - minColumn, maxRow - minRow));
+        setTranslateX(minColumn * cellSize);
+        setTranslateY(minRow * cellSize);
+        setFitWidth((maxColumn - minColumn) * cellSize);
+        setFitHeight((maxRow - minRow) * cellSize);
+    }
+
+    /**
+     * カーソルの位置を記録する。直前の位置に、直前のイベントからの経過時間を積算する。
+     * @param timestamp 時刻({@link System#nanoTime()})
+     * @param x X座標。描画範囲外のときは{@link Double#NaN}
+     * @param y Y座標。描画範囲外のときは{@link Double#NaN}
+     */
+    void record(long timestamp, double x, double y) {
+        if (0 <= lastCell) {
+            long elapsed = timestamp - lastTimestamp + remainderNanos;
+            if (0 < elapsed) {
+                long millis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+                remainderNanos = elapsed - TimeUnit.MILLISECONDS.toNanos(millis);
+                if (0 < millis) {
+                    add(lastCell, millis);
+                }
+            }
+        }
+
+        lastTimestamp = timestamp;
+        lastCell = cellOf(x, y);
+    }
+
+    /**
+     * 積算を中断する。次に{@link #record}するまでの時間は積算しない。
+     * ヒートマップを表示しなくなったときや、カーソルがウインドウから出るなどしてマウスイベントが届かなくなるときに呼び出す。
+     */
+    void pause() {
+        lastCell = -1;
+        remainderNanos = 0;
+    }
+
+    /**
+     * 積算した値を消去する。
+     */
+    void clear() {
+        Arrays.fill(dwell, 0);
+        lastCell = -1;
+        remainderNanos = 0;
+        if (0 < rows) {
+            for (int row = 0; row < rows; row++) {
+                markDirty(row);
+            }
+            renderTask.request();
+        }
+    }
+
+    /**
+     * 指定したセルの滞留時間(ミリ秒)。
+     */
+    int getDwell(int column, int row) {
+        return dwell[column + row * columns];
+    }
+
+    private int cellOf(double x, double y) {
+        if (!(0 <= x && 0 <= y)) {
+            return -1;
+        }
+        int column = (int) (x / cellSize);
+        int row = (int) (y / cellSize);
+        if (columns <= column || rows <= row) {
+            return -1;
+        }
+        return column + row * columns;
+    }
+
+    private void add(int cell, long millis) {
+        int value = dwell[cell];
+        // 最も濃い色を超えた値は表示に影響しないが、消去しない限り減らないように飽和させる
+        dwell[cell] = (int) Math.min(Integer.MAX_VALUE, value + millis);
+
+        markDirty(cell / columns);
+        renderTask.request();
+    }
+
+    private void markDirty(int row) {
+        dirtyRows[row >>> 6] |= 1L << row;
+        dirty = true;
+    }
+
+    private void resetDirty() {
+        Arrays.fill(dirtyRows, 0);
+        dirty = false;
+    }
+
+    /**
+     * 値が変わった行のみを画像に書き込む。連続する行はまとめて書き込む。
+     */
+    private void render() {
+        if (image == null || !dirty) {
+            return;
+        }
+
+        PixelWriter writer = image.getPixelWriter();
+        int row = nextDirtyRow(0);
+        while (0 <= row) {
+            int end = row + 1;
+            while (end < rows && isDirty(end)) {
+                end++;
+            }
+
+            int from = row * columns;
+            int to = end * columns;
+            for (int i = from; i < to; i++) {
+                pixels[i] = colorOf(dwell[i]);
+            }
+            writer.setPixels(0, row, columns, end - row, PixelFormat.getIntArgbPreInstance(), pixels, from, columns);
+
+            row = nextDirtyRow(end);
+        }
+
+        resetDirty();
+    }
+
+    private boolean isDirty(int row) {
+        return (dirtyRows[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * 指定した行以降で最初の値が変わった行。ないときは-1
+     */
+    private int nextDirtyRow(int from) {
+        if (rows <= from) {
+            return -1;
+        }
+        int index = from >>> 6;
+        long word = dirtyRows[index] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int row = (index << 6) + Long.numberOfTrailingZeros(word);
+                return row < rows ? row : -1;
+            }
+            if (++index == dirtyRows.length) {
+                return -1;
+            }
+            word = dirtyRows[index];
+        }
+    }
+
+    static int colorOf(int millis) {
+        if (millis <= 0) {
+            return 0;
+        }
+        int level = (int) Math.min(LEVELS - 1, (long) millis * (LEVELS - 1) / SATURATION_MILLIS);
+        return PALETTE[Math.max(1, level)];
+    }
+
+    /**
+     * 短いほど青く透明に、長いほど赤く不透明になる変換表。値は乗算済みアルファのARGB。
+     */
+    private static int[] createPalette() {
+        int[] palette = new int[LEVELS];
+        for (int i = 1; i < LEVELS; i++) {
+            double ratio = (double) i / (LEVELS - 1);
+            Color color = Color.hsb(240 * (1 - ratio), 1, 1);
+            double alpha = 0.15 + 0.55 * ratio;
+
+            int a = (int) Math.round(alpha * 255);
+            int r = (int) Math.round(color.getRed() * alpha * 255);
+            int g = (int) Math.round(color.getGreen() * alpha * 255);
+            int b = (int) Math.round(color.getBlue() * alpha * 255);
+            palette[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+        return palette;
+    }
+
+}
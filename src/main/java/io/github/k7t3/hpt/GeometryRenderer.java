@@ -0,0 +1,36 @@
+package io.github.k7t3.hpt;
+
+/**
+ * 描画範囲を構成するノードの配置方法。
+ */
+public enum GeometryRenderer {
+
+    /**
+     * ノードの位置と大きさをプロパティのバインディングで計算する。
+     */
+    BINDING,
+
+    /**
+     * ノードを一つのRegionに配置し、レイアウトパスでまとめて計算する。
+     * <p>
+     * 描画範囲が変わったときにバインディングの連鎖を評価せず、パルスごとに一度だけ配置を計算する。
+     */
+    REGION;
+
+    /**
+     * 起動引数の値から配置方法を求める。
+     * @param value 大文字・小文字は区別しない。nullのときは{@link #BINDING}
+     */
+    public static GeometryRenderer of(String value) {
+        if (value == null) {
+            return BINDING;
+        }
+        for (GeometryRenderer renderer : values()) {
+            if (renderer.name().equalsIgnoreCase(value)) {
+                return renderer;
+            }
+        }
+        throw new IllegalArgumentException("unknown renderer: " + value);
+    }
+
+}
@@ -6,39 +6,145 @@ import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.input.Clipboard;
 import javafx.scene.input.DataFormat;
-import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @SuppressWarnings("ConstantConditions")
 public class HPTApplication extends Application {
     
+    private static final long AUTOSAVE_CLOSE_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * 前回のディスプレイ構成が変わっていなければ設定画面を表示せずに起動する引数
+     */
+    public static final String FAST_START_PARAMETER = "--fast-start";
+
+    /**
+     * 描画範囲の配置方法を指定する起動引数の名前。{@code --renderer=region}のように指定する
+     */
+    public static final String RENDERER_PARAMETER = "renderer";
+
+    /**
+     * ウインドウをディスプレイ全体ではなく描画範囲の周囲だけにする起動引数
+     */
+    public static final String FIT_WINDOW_PARAMETER = "--fit-window";
+
+    /**
+     * 滞留時間のヒートマップのセルの大きさを指定する起動引数の名前。{@code --heatmap-cell=16}のように指定する
+     */
+    public static final String HEATMAP_CELL_PARAMETER = "heatmap-cell";
+
     private Exception propertyReadError;
 
+    /**
+     * 前回の描画範囲とディスプレイをそのまま復元できるか
+     */
+    private boolean sessionRestorable = false;
+
     private SceneProperties properties;
 
+    private final TrajectoryRecorder trajectoryRecorder = new TrajectoryRecorder();
+
+    private final TraceFileWriter traceFileWriter = new TraceFileWriter();
+
+    /**
+     * ポインタイベントをJavaFX Application Threadの外で受け取るためのバス
+     */
+    private final PointerEventBus pointerEventBus = new PointerEventBus();
+
+    private PointerStreamServer pointerStreamServer;
+
+    private QueryServer queryServer;
+
+    private final PerformanceMetrics performanceMetrics = new PerformanceMetrics();
+
+    private ObjectName performanceMetricsName;
+
+    private AutosaveService autosaveService;
+
+    /**
+     * 設定画面。FXMLの読み込みに時間がかかるため先読みし、以降は使い回す。
+     * 起動時に設定画面を表示するときは{@link #init()}の間に、高速起動するときはウインドウを表示した後に先読みする
+     */
+    private CompletableFuture<PropertyViewController> propertyViewFuture;
+
     @Override
     public void init() throws Exception {
         super.init();
 
         Platform.setImplicitExit(true);
 
+        registerPerformanceMetrics();
+
         properties = new SceneProperties();
 
+        // 高速起動するときは最初のフレームを遅らせないように、設定画面はウインドウを表示してから生成する
+        boolean fastStartRequested = getParameters().getRaw().contains(FAST_START_PARAMETER);
+        if (!fastStartRequested) {
+            preloadPropertyView();
+        }
+
         try {
 
             PropertyManager manager = new PropertyManager(properties);
+            long start = System.nanoTime();
             manager.load();
+            performanceMetrics.recordPersist(System.nanoTime() - start);
+            sessionRestorable = manager.isSessionRestorable();
 
         } catch (Exception e) {
             
             propertyReadError = e;
 
         }
-        
+
+        // 前回の構成を復元できないときは高速起動せずに設定画面を表示する
+        if (fastStartRequested && !sessionRestorable) {
+            preloadPropertyView();
+        }
+    }
+
+    /**
+     * 性能指標をJMXで参照できるようにプラットフォームのMBeanサーバに登録する。
+     */
+    private void registerPerformanceMetrics() {
+        try {
+
+            ObjectName name = new ObjectName(PerformanceMetrics.OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(performanceMetrics, name);
+            performanceMetricsName = name;
+
+        } catch (JMException e) {
+
+            e.printStackTrace();
+
+        }
+    }
+
+    private void unregisterPerformanceMetrics() {
+        if (performanceMetricsName == null) {
+            return;
+        }
+
+        try {
+
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(performanceMetricsName);
+
+        } catch (JMException e) {
+
+            e.printStackTrace();
+
+        }
+
+        performanceMetricsName = null;
     }
 
     private boolean isInterruptIfPropertyReadError() {
@@ -83,10 +189,32 @@ public class HPTApplication extends Application {
     public void stop() throws Exception {
         super.stop();
 
+        // 書き出し途中のトレースを書き終える
+        traceFileWriter.close(1000);
+
+        if (pointerStreamServer != null) {
+            pointerStreamServer.stop();
+        }
+
+        if (queryServer != null) {
+            queryServer.stop();
+        }
+
+        // 購読者に残っているイベントを受け渡す
+        pointerEventBus.close(1000);
+
+        unregisterPerformanceMetrics();
+
         if (properties == null) {
             return;
         }
 
+        // 自動保存が動作している場合は保存していない変更のみを書き込む
+        if (autosaveService != null) {
+            autosaveService.close(AUTOSAVE_CLOSE_TIMEOUT_MILLIS);
+            return;
+        }
+
         PropertyManager manager = new PropertyManager(properties);
         manager.save();
 
@@ -103,18 +231,51 @@ public class HPTApplication extends Application {
             return;
         }
 
-        // プロパティ設定画面を表示
-        PropertyViewController controller = new PropertyViewController(properties);
-        controller.initModality(Modality.WINDOW_MODAL);
-        controller.showAndWait();
+        // 高速起動が指定されていて前回と同じディスプレイ構成のときは設定画面を省略する
+        boolean fastStart = getParameters().getRaw().contains(FAST_START_PARAMETER) && sessionRestorable;
+
+        if (!fastStart) {
+
+            // プロパティ設定画面を表示
+            PropertyViewController propertyView = getPropertyView();
+            propertyView.refresh();
+            propertyView.showAndWait();
+
+            // キャンセルされていたら終了
+            if (propertyView.isCancelled()) {
+                Platform.exit();
+                return;
+            }
 
-        // キャンセルされていたら終了
-        if (controller.isCancelled()) {
-            Platform.exit();
-            return;
         }
 
-        HoveringPointTrackerScene scene = new HoveringPointTrackerScene(properties);
+        GeometryRenderer renderer = GeometryRenderer.of(getParameters().getNamed().get(RENDERER_PARAMETER));
+        HoveringPointTrackerScene scene = new HoveringPointTrackerScene(properties, renderer);
+        scene.setPerformanceMetrics(performanceMetrics);
+        scene.setFitWindowToGeometry(getParameters().getRaw().contains(FIT_WINDOW_PARAMETER));
+
+        String heatmapCell = getParameters().getNamed().get(HEATMAP_CELL_PARAMETER);
+        if (heatmapCell != null) {
+            try {
+
+                scene.setDwellHeatmapCellSize(Integer.parseInt(heatmapCell));
+
+            } catch (IllegalArgumentException e) {
+
+                e.printStackTrace();
+
+            }
+        }
+
+        // 設定の変更を自動的に保存する
+        PropertyManager manager = new PropertyManager(properties);
+        if (manager.isSupported()) {
+            autosaveService = new AutosaveService(properties, manager);
+            autosaveService.setPerformanceMetrics(performanceMetrics);
+            autosaveService.start();
+            // 設定画面で変更した値を保存する
+            autosaveService.flush();
+        }
 
         MenuItem clipPointMenuItem = new MenuItem("座標をコピー");
         clipPointMenuItem.setOnAction(e -> {
@@ -124,17 +285,106 @@ public class HPTApplication extends Application {
             e.consume();
         });
 
+        // 座標を他のツールに配信するサーバ
+        pointerStreamServer = new PointerStreamServer(pointerEventBus, properties);
+
+        CheckMenuItem streamPointMenuItem = new CheckMenuItem("座標を配信");
+        streamPointMenuItem.selectedProperty().addListener((ob, o, n) -> {
+            if (!n) {
+                pointerStreamServer.stop();
+                return;
+            }
+            try {
+
+                pointerStreamServer.start();
+
+            } catch (IOException ex) {
+
+                ex.printStackTrace();
+                streamPointMenuItem.setSelected(false);
+
+            }
+        });
+
         MenuItem clearSavedPointsMenuItem = new MenuItem("座標をすべて削除");
         clearSavedPointsMenuItem.setOnAction(e -> {
             scene.clearClickPoints();
             e.consume();
         });
 
+        // カーソルの軌跡の記録
+        scene.addPointerListener(trajectoryRecorder);
+
+        CheckMenuItem recordTrajectoryMenuItem = new CheckMenuItem("軌跡を記録");
+        recordTrajectoryMenuItem.setSelected(trajectoryRecorder.isRecording());
+        recordTrajectoryMenuItem.selectedProperty().addListener((ob, o, n) -> {
+            if (n) {
+                trajectoryRecorder.start();
+            } else {
+                trajectoryRecorder.stop();
+            }
+        });
+
+        MenuItem clearTrajectoryMenuItem = new MenuItem("軌跡を消去");
+        clearTrajectoryMenuItem.setOnAction(e -> {
+            trajectoryRecorder.clear();
+            e.consume();
+        });
+
+        // 状態を問い合わせるHTTPサーバ
+        queryServer = new QueryServer(properties, scene::getClickPointSnapshot, trajectoryRecorder);
+
+        CheckMenuItem queryServerMenuItem = new CheckMenuItem("問い合わせを受け付ける");
+        queryServerMenuItem.selectedProperty().addListener((ob, o, n) -> {
+            if (!n) {
+                queryServer.stop();
+                scene.setClickPointSnapshotEnabled(false);
+                return;
+            }
+            try {
+
+                // クリックポイントのスナップショットは問い合わせを受け付けている間だけ作成する
+                scene.setClickPointSnapshotEnabled(true);
+                queryServer.start();
+
+            } catch (IOException ex) {
+
+                ex.printStackTrace();
+                queryServerMenuItem.setSelected(false);
+
+            }
+        });
+
+        // カーソルの滞留時間のヒートマップ
+        CheckMenuItem dwellHeatmapMenuItem = new CheckMenuItem("滞留時間を表示");
+        dwellHeatmapMenuItem.selectedProperty().bindBidirectional(scene.dwellHeatmapProperty());
+
+        MenuItem clearDwellHeatmapMenuItem = new MenuItem("滞留時間を消去");
+        clearDwellHeatmapMenuItem.setOnAction(e -> {
+            scene.clearDwellHeatmap();
+            e.consume();
+        });
+
+        // トレースファイルへの書き出し
+        scene.addPointerListener(traceFileWriter);
+
+        // JavaFX Application Thread以外の購読者への受け渡し
+        scene.addPointerListener(pointerEventBus);
+
+        CheckMenuItem writeTraceMenuItem = new CheckMenuItem("トレースファイルに記録");
+        writeTraceMenuItem.setSelected(traceFileWriter.isRunning());
+        writeTraceMenuItem.selectedProperty().addListener((ob, o, n) -> {
+            if (n) {
+                traceFileWriter.start();
+            } else {
+                traceFileWriter.stop();
+            }
+        });
+
         MenuItem showPropertyMenuItem = new MenuItem("プロパティ");
         showPropertyMenuItem.setOnAction(e -> {
-            PropertyViewController propertyView = new PropertyViewController(properties);
-            propertyView.initOwner(primaryStage);
-            propertyView.initModality(Modality.WINDOW_MODAL);
+            PropertyViewController propertyView = getPropertyView();
+            propertyView.refresh();
             propertyView.showAndWait();
         });
 
@@ -144,6 +394,14 @@ public class HPTApplication extends Application {
         scene.getContextMenu().getItems().addAll(
                 clearSavedPointsMenuItem,
                 clipPointMenuItem,
+                streamPointMenuItem,
+                new SeparatorMenuItem(),
+                recordTrajectoryMenuItem,
+                clearTrajectoryMenuItem,
+                dwellHeatmapMenuItem,
+                clearDwellHeatmapMenuItem,
+                writeTraceMenuItem,
+                queryServerMenuItem,
                 new SeparatorMenuItem(),
                 showPropertyMenuItem,
                 new SeparatorMenuItem(),
@@ -154,5 +412,32 @@ public class HPTApplication extends Application {
         primaryStage.getIcons().add(new Image(getClass().getResource("/icon/icon.png").toExternalForm()));
         primaryStage.initStyle(StageStyle.TRANSPARENT);
         primaryStage.show();
+
+        // 高速起動したときはウインドウを表示してから設定画面を先読みする
+        preloadPropertyView();
+    }
+
+    /**
+     * 設定画面の生成をJavaFX Application Threadに依頼する。Stageの生成はJavaFX Application Threadに限られる。
+     * すでに依頼しているときは何もしない。
+     */
+    private void preloadPropertyView() {
+        if (propertyViewFuture == null) {
+            propertyViewFuture = CompletableFuture.supplyAsync(() -> new PropertyViewController(properties), Platform::runLater);
+        }
+    }
+
+    /**
+     * 設定画面を返す。先読みが終わっていないときはこの場で生成する。
+     * 先読みの処理は完了済みのFutureに対しては何もしないため、二重には生成されない。
+     */
+    private PropertyViewController getPropertyView() {
+        if (propertyViewFuture == null) {
+            propertyViewFuture = new CompletableFuture<>();
+        }
+        if (!propertyViewFuture.isDone()) {
+            propertyViewFuture.complete(new PropertyViewController(properties));
+        }
+        return propertyViewFuture.join();
     }
 }
@@ -1,31 +1,32 @@
 package io.github.k7t3.hpt;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.KeyValue;
-import javafx.animation.Timeline;
+import javafx.beans.InvalidationListener;
 import javafx.beans.binding.DoubleExpression;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.collections.ListChangeListener;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.*;
 import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Label;
-import javafx.scene.control.Tooltip;
 import javafx.scene.effect.DropShadow;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.Rectangle;
-import javafx.scene.text.Font;
 import javafx.stage.*;
-import javafx.util.Duration;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 
 public class HoveringPointTrackerScene extends Scene {
 
@@ -89,6 +90,11 @@ public class HoveringPointTrackerScene extends Scene {
      */
     private final Label pointLabel;
 
+    /**
+     * 描画範囲の枠を構成するノードをまとめてキャッシュするレイヤ。
+     */
+    private final Group frameLayer;
+
     /**
      * 画面を上方向に伸長するための上部エッジ。
      */
@@ -129,148 +135,110 @@ public class HoveringPointTrackerScene extends Scene {
      */
     private final Rectangle expandableBottomLeftNode;
 
+    /**
+     * 描画範囲を構成するノードの配置方法。
+     */
+    private final GeometryRenderer renderer;
+
     public HoveringPointTrackerScene(SceneProperties properties) {
+        this(properties, GeometryRenderer.BINDING);
+    }
+
+    public HoveringPointTrackerScene(SceneProperties properties, GeometryRenderer renderer) {
         super(new Group());
         this.root = (Group) getRoot();
         this.properties = properties;
+        this.renderer = renderer;
 
         // nodeの初期化とプロパティバインディング
 
         sceneBorder = new Rectangle();
         sceneBorder.setFill(Color.TRANSPARENT);
         sceneBorder.strokeProperty().bind(properties.sceneBorderColorProperty());
-        sceneBorder.widthProperty().bind(widthProperty());
-        sceneBorder.heightProperty().bind(heightProperty());
 
         rectangle = new Rectangle();
-        rectangle.translateXProperty().bind(properties.minXProperty().add(properties.edgeWidthProperty()));
-        rectangle.translateYProperty().bind(properties.minYProperty().add(properties.edgeWidthProperty()));
-        rectangle.widthProperty().bind(properties.widthProperty().subtract(properties.edgeWidthProperty().multiply(2)));
-        rectangle.heightProperty().bind(properties.heightProperty().subtract(properties.edgeWidthProperty().multiply(2)));
         rectangle.fillProperty().bind(properties.paintColorProperty());
 
         horizontalGrid = new Line(0, 0, 0, 0);
         horizontalGrid.setMouseTransparent(true);
         horizontalGrid.fillProperty().bind(properties.gridColorProperty());
         horizontalGrid.strokeProperty().bind(properties.gridColorProperty());
-        horizontalGrid.startXProperty().bind(properties.minXProperty());
-        horizontalGrid.endXProperty().bind(properties.minXProperty().add(properties.widthProperty()));
-        horizontalGrid.startYProperty().bind(properties.currentYProperty());
-        horizontalGrid.endYProperty().bind(properties.currentYProperty().add(1));
 
         verticalGrid = new Line(0, 0, 0, 0);
         verticalGrid.setMouseTransparent(true);
         verticalGrid.fillProperty().bind(properties.gridColorProperty());
         verticalGrid.strokeProperty().bind(properties.gridColorProperty());
-        verticalGrid.startXProperty().bind(properties.currentXProperty());
-        verticalGrid.endXProperty().bind(properties.currentXProperty().add(1));
-        verticalGrid.startYProperty().bind(properties.minYProperty());
-        verticalGrid.endYProperty().bind(properties.minYProperty().add(properties.heightProperty()));
 
         pointLabel = new Label();
         pointLabel.setMouseTransparent(true);
         pointLabel.fontProperty().bind(properties.labelFontProperty());
         pointLabel.textFillProperty().bind(properties.labelColorProperty());
         pointLabel.setEffect(new DropShadow());
-        pointLabel.translateXProperty().bind(properties.minXProperty().add(properties.widthProperty()).subtract(pointLabel.widthProperty()).subtract(properties.edgeWidthProperty()));
-        pointLabel.translateYProperty().bind(properties.minYProperty().add(properties.heightProperty()).subtract(pointLabel.heightProperty()).subtract(properties.edgeWidthProperty()));
-        pointLabel.textProperty().bind(properties.currentXProperty().asString("(%4.0f,").concat(properties.currentYProperty().asString("%4.0f)")));
+        pointLabel.textProperty().bind(new CoordinateFormatter("(", 4, ",", ")", properties.currentXProperty(), properties.currentYProperty()).textProperty());
 
         xLabel = new Label();
         xLabel.fontProperty().bind(properties.labelFontProperty());
         xLabel.textFillProperty().bind(properties.labelColorProperty());
-        xLabel.textProperty().bind(properties.minXProperty().asString("x = %.0f"));
+        xLabel.textProperty().bind(new CoordinateFormatter("x = ", 0, "", "", properties.minXProperty()).textProperty());
 
         yLabel = new Label();
         yLabel.fontProperty().bind(properties.labelFontProperty());
         yLabel.textFillProperty().bind(properties.labelColorProperty());
-        yLabel.textProperty().bind(properties.minYProperty().asString("y = %.0f"));
+        yLabel.textProperty().bind(new CoordinateFormatter("y = ", 0, "", "", properties.minYProperty()).textProperty());
 
         wLabel = new Label();
         wLabel.fontProperty().bind(properties.labelFontProperty());
         wLabel.textFillProperty().bind(properties.labelColorProperty());
-        wLabel.textProperty().bind(properties.widthProperty().asString("w = %.0f"));
+        wLabel.textProperty().bind(new CoordinateFormatter("w = ", 0, "", "", properties.widthProperty()).textProperty());
 
         hLabel = new Label();
         hLabel.fontProperty().bind(properties.labelFontProperty());
         hLabel.textFillProperty().bind(properties.labelColorProperty());
-        hLabel.textProperty().bind(properties.heightProperty().asString("h = %.0f"));
+        hLabel.textProperty().bind(new CoordinateFormatter("h = ", 0, "", "", properties.heightProperty()).textProperty());
 
         rectLabelContainer = new VBox(xLabel, yLabel, wLabel, hLabel);
         rectLabelContainer.setMouseTransparent(true);
         rectLabelContainer.setEffect(new DropShadow());
-        rectLabelContainer.translateXProperty().bind(properties.minXProperty().add(properties.widthProperty()).subtract(rectLabelContainer.widthProperty()).subtract(10));
-        rectLabelContainer.translateYProperty().bind(properties.minYProperty().add(properties.edgeWidthProperty()));
 
 
         expandableTopEdge = new Rectangle();
         expandableTopEdge.setCursor(Cursor.N_RESIZE);
         expandableTopEdge.fillProperty().bind(properties.edgeColorProperty());
-        expandableTopEdge.translateXProperty().bind(properties.minXProperty().add(properties.edgeWidthProperty()));
-        expandableTopEdge.translateYProperty().bind(properties.minYProperty());
-        expandableTopEdge.widthProperty().bind(properties.widthProperty().subtract(properties.edgeWidthProperty().multiply(2)));
-        expandableTopEdge.heightProperty().bind(properties.edgeWidthProperty());
 
         expandableRightEdge = new Rectangle();
         expandableRightEdge.setCursor(Cursor.E_RESIZE);
         expandableRightEdge.fillProperty().bind(properties.edgeColorProperty());
-        expandableRightEdge.translateXProperty().bind(properties.minXProperty().add(properties.widthProperty()).subtract(properties.edgeWidthProperty()));
-        expandableRightEdge.translateYProperty().bind(properties.minYProperty().add(properties.edgeWidthProperty()));
-        expandableRightEdge.widthProperty().bind(properties.edgeWidthProperty());
-        expandableRightEdge.heightProperty().bind(properties.heightProperty().subtract(properties.edgeWidthProperty().multiply(2)));
 
         expandableBottomEdge = new Rectangle();
         expandableBottomEdge.setCursor(Cursor.S_RESIZE);
         expandableBottomEdge.fillProperty().bind(properties.edgeColorProperty());
-        expandableBottomEdge.translateXProperty().bind(properties.minXProperty().add(properties.edgeWidthProperty()));
-        expandableBottomEdge.translateYProperty().bind(properties.minYProperty().add(properties.heightProperty()).subtract(properties.edgeWidthProperty()));
-        expandableBottomEdge.widthProperty().bind(properties.widthProperty().subtract(properties.edgeWidthProperty().multiply(2)));
-        expandableBottomEdge.heightProperty().bind(properties.edgeWidthProperty());
 
         expandableLeftEdge = new Rectangle();
         expandableLeftEdge.setCursor(Cursor.W_RESIZE);
         expandableLeftEdge.fillProperty().bind(properties.edgeColorProperty());
-        expandableLeftEdge.translateXProperty().bind(properties.minXProperty());
-        expandableLeftEdge.translateYProperty().bind(properties.minYProperty().add(properties.edgeWidthProperty()));
-        expandableLeftEdge.widthProperty().bind(properties.edgeWidthProperty());
-        expandableLeftEdge.heightProperty().bind(properties.heightProperty().subtract(properties.edgeWidthProperty().multiply(2)));
 
         expandableTopLeftNode = new Rectangle();
         expandableTopLeftNode.setCursor(Cursor.NW_RESIZE);
         expandableTopLeftNode.fillProperty().bind(properties.edgeColorProperty());
-        expandableTopLeftNode.translateXProperty().bind(properties.minXProperty());
-        expandableTopLeftNode.translateYProperty().bind(properties.minYProperty());
-        expandableTopLeftNode.widthProperty().bind(properties.edgeWidthProperty());
-        expandableTopLeftNode.heightProperty().bind(properties.edgeWidthProperty());
 
         expandableTopRightNode = new Rectangle();
         expandableTopRightNode.setCursor(Cursor.NE_RESIZE);
         expandableTopRightNode.fillProperty().bind(properties.edgeColorProperty());
-        expandableTopRightNode.translateXProperty().bind(properties.minXProperty().add(properties.widthProperty()).subtract(properties.edgeWidthProperty()));
-        expandableTopRightNode.translateYProperty().bind(properties.minYProperty());
-        expandableTopRightNode.widthProperty().bind(properties.edgeWidthProperty());
-        expandableTopRightNode.heightProperty().bind(properties.edgeWidthProperty());
 
         expandableBottomRightNode = new Rectangle();
         expandableBottomRightNode.setCursor(Cursor.SE_RESIZE);
         expandableBottomRightNode.fillProperty().bind(properties.edgeColorProperty());
-        expandableBottomRightNode.translateXProperty().bind(properties.minXProperty().add(properties.widthProperty()).subtract(properties.edgeWidthProperty()));
-        expandableBottomRightNode.translateYProperty().bind(properties.minYProperty().add(properties.heightProperty()).subtract(properties.edgeWidthProperty()));
-        expandableBottomRightNode.widthProperty().bind(properties.edgeWidthProperty());
-        expandableBottomRightNode.heightProperty().bind(properties.edgeWidthProperty());
 
         expandableBottomLeftNode = new Rectangle();
         expandableBottomLeftNode.setCursor(Cursor.SW_RESIZE);
         expandableBottomLeftNode.fillProperty().bind(properties.edgeColorProperty());
-        expandableBottomLeftNode.translateXProperty().bind(properties.minXProperty());
-        expandableBottomLeftNode.translateYProperty().bind(properties.minYProperty().add(properties.heightProperty()).subtract(properties.edgeWidthProperty()));
-        expandableBottomLeftNode.widthProperty().bind(properties.edgeWidthProperty());
-        expandableBottomLeftNode.heightProperty().bind(properties.edgeWidthProperty());
 
         // 各種イベントの付与
         addDragEvent();
         addExpandEvent();
         addEventHandler(MouseEvent.MOUSE_MOVED, this::updateCurrentCursorPositionHandler);
+        // ウインドウの外にある間は滞留時間を積算しない
+        addEventHandler(MouseEvent.MOUSE_EXITED, e -> pauseDwellHeatmap());
         addContextMenuRequestedEvent();
         addClickPointsEvent();
         addScreenSizeListener();
@@ -278,8 +246,8 @@ public class HoveringPointTrackerScene extends Scene {
         // Sceneの背景は透過
         setFill(Color.TRANSPARENT);
 
-        // Nodeの登録
-        root.getChildren().addAll(
+        // 描画範囲の枠は描画範囲が変わったときだけ描き直すようにまとめてキャッシュする
+        frameLayer = new Group(
                 sceneBorder,
                 rectangle,
                 expandableTopEdge,
@@ -289,16 +257,230 @@ public class HoveringPointTrackerScene extends Scene {
                 expandableTopLeftNode,
                 expandableTopRightNode,
                 expandableBottomLeftNode,
-                expandableBottomRightNode,
+                expandableBottomRightNode
+        );
+        frameLayer.setCache(true);
+        frameLayer.setCacheHint(CacheHint.SPEED);
+
+        // 座標ラベルも描画範囲が変わったときだけ変化する
+        rectLabelContainer.setCache(true);
+
+        // カーソルを追いかけるグリッドとラベルは変化が多いためキャッシュしない
+        Node[] geometryNodes = {
+                frameLayer,
                 horizontalGrid,
                 verticalGrid,
                 rectLabelContainer,
                 pointLabel
-        );
+        };
 
-        // 描画キャッシュの有効化
-        root.setCache(true);
+        // Nodeの登録
+        if (renderer == GeometryRenderer.REGION) {
+            root.getChildren().add(new GeometryLayoutRegion(geometryNodes));
+        } else {
+            bindGeometry();
+            root.getChildren().addAll(geometryNodes);
+        }
+        root.getChildren().addAll(clickPointLayer, rippleLayer);
+    }
+
+    /**
+     * ルート全体をまとめてキャッシュするか。
+     * <p>
+     * 既定ではレイヤごとにキャッシュする。ルート全体をキャッシュすると、カーソルが動くたびに
+     * Scene全体のキャッシュを描き直すことになるため、比較のための計測でのみ使用する。
+     * @param rootCached ルート全体をキャッシュするときはtrue
+     */
+    void setRootCached(boolean rootCached) {
+        root.setCache(rootCached);
         root.setCacheHint(CacheHint.SPEED);
+        frameLayer.setCache(!rootCached);
+        rectLabelContainer.setCache(!rootCached);
+    }
+
+    public GeometryRenderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * 描画範囲を構成するノードの位置と大きさをプロパティにバインドする。
+     */
+    private void bindGeometry() {
+        sceneBorder.widthProperty().bind(surfaceWidth);
+        sceneBorder.heightProperty().bind(surfaceHeight);
+        rectangle.translateXProperty().bind(properties.minXProperty().add(properties.edgeWidthProperty()));
+        rectangle.translateYProperty().bind(properties.minYProperty().add(properties.edgeWidthProperty()));
+        rectangle.widthProperty().bind(properties.widthProperty().subtract(properties.edgeWidthProperty().multiply(2)));
+        rectangle.heightProperty().bind(properties.heightProperty().subtract(properties.edgeWidthProperty().multiply(2)));
+        horizontalGrid.startXProperty().bind(properties.minXProperty());
+        horizontalGrid.endXProperty().bind(properties.minXProperty().add(properties.widthProperty()));
+        horizontalGrid.startYProperty().bind(properties.currentYProperty());
+        horizontalGrid.endYProperty().bind(properties.currentYProperty().add(1));
+        verticalGrid.startXProperty().bind(properties.currentXProperty());
+        verticalGrid.endXProperty().bind(properties.currentXProperty().add(1));
+        verticalGrid.startYProperty().bind(properties.minYProperty());
+        verticalGrid.endYProperty().bind(properties.minYProperty().add(properties.heightProperty()));
+        pointLabel.translateXProperty().bind(properties.minXProperty().add(properties.widthProperty()).subtract(pointLabel.widthProperty()).subtract(properties.edgeWidthProperty()));
+        pointLabel.translateYProperty().bind(properties.minYProperty().add(properties.heightProperty()).subtract(pointLabel.heightProperty()).subtract(properties.edgeWidthProperty()));
+        rectLabelContainer.translateXProperty().bind(properties.minXProperty().add(properties.widthProperty()).subtract(rectLabelContainer.widthProperty()).subtract(10));
+        rectLabelContainer.translateYProperty().bind(properties.minYProperty().add(properties.edgeWidthProperty()));
+        expandableTopEdge.translateXProperty().bind(properties.minXProperty().add(properties.edgeWidthProperty()));
+        expandableTopEdge.translateYProperty().bind(properties.minYProperty());
+        expandableTopEdge.widthProperty().bind(properties.widthProperty().subtract(properties.edgeWidthProperty().multiply(2)));
+        expandableTopEdge.heightProperty().bind(properties.edgeWidthProperty());
+        expandableRightEdge.translateXProperty().bind(properties.minXProperty().add(properties.widthProperty()).subtract(properties.edgeWidthProperty()));
+        expandableRightEdge.translateYProperty().bind(properties.minYProperty().add(properties.edgeWidthProperty()));
+        expandableRightEdge.widthProperty().bind(properties.edgeWidthProperty());
+        expandableRightEdge.heightProperty().bind(properties.heightProperty().subtract(properties.edgeWidthProperty().multiply(2)));
+        expandableBottomEdge.translateXProperty().bind(properties.minXProperty().add(properties.edgeWidthProperty()));
+        expandableBottomEdge.translateYProperty().bind(properties.minYProperty().add(properties.heightProperty()).subtract(properties.edgeWidthProperty()));
+        expandableBottomEdge.widthProperty().bind(properties.widthProperty().subtract(properties.edgeWidthProperty().multiply(2)));
+        expandableBottomEdge.heightProperty().bind(properties.edgeWidthProperty());
+        expandableLeftEdge.translateXProperty().bind(properties.minXProperty());
+        expandableLeftEdge.translateYProperty().bind(properties.minYProperty().add(properties.edgeWidthProperty()));
+        expandableLeftEdge.widthProperty().bind(properties.edgeWidthProperty());
+        expandableLeftEdge.heightProperty().bind(properties.heightProperty().subtract(properties.edgeWidthProperty().multiply(2)));
+        expandableTopLeftNode.translateXProperty().bind(properties.minXProperty());
+        expandableTopLeftNode.translateYProperty().bind(properties.minYProperty());
+        expandableTopLeftNode.widthProperty().bind(properties.edgeWidthProperty());
+        expandableTopLeftNode.heightProperty().bind(properties.edgeWidthProperty());
+        expandableTopRightNode.translateXProperty().bind(properties.minXProperty().add(properties.widthProperty()).subtract(properties.edgeWidthProperty()));
+        expandableTopRightNode.translateYProperty().bind(properties.minYProperty());
+        expandableTopRightNode.widthProperty().bind(properties.edgeWidthProperty());
+        expandableTopRightNode.heightProperty().bind(properties.edgeWidthProperty());
+        expandableBottomRightNode.translateXProperty().bind(properties.minXProperty().add(properties.widthProperty()).subtract(properties.edgeWidthProperty()));
+        expandableBottomRightNode.translateYProperty().bind(properties.minYProperty().add(properties.heightProperty()).subtract(properties.edgeWidthProperty()));
+        expandableBottomRightNode.widthProperty().bind(properties.edgeWidthProperty());
+        expandableBottomRightNode.heightProperty().bind(properties.edgeWidthProperty());
+        expandableBottomLeftNode.translateXProperty().bind(properties.minXProperty());
+        expandableBottomLeftNode.translateYProperty().bind(properties.minYProperty().add(properties.heightProperty()).subtract(properties.edgeWidthProperty()));
+        expandableBottomLeftNode.widthProperty().bind(properties.edgeWidthProperty());
+        expandableBottomLeftNode.heightProperty().bind(properties.edgeWidthProperty());
+    }
+
+    /**
+     * 描画範囲を構成するノードの位置と大きさを、プロパティから直接計算して設定する。
+     * <p>
+     * {@link GeometryRenderer#REGION}のときに、描画範囲や縁の幅、描画面の大きさが変わった後のレイアウトパスから呼び出される。
+     */
+    private void layoutGeometry() {
+        double minX = properties.getMinX();
+        double minY = properties.getMinY();
+        double width = properties.getWidth();
+        double height = properties.getHeight();
+        double edge = properties.getEdgeWidth();
+        double maxX = minX + width;
+        double maxY = minY + height;
+
+        sceneBorder.setWidth(surfaceWidth.get());
+        sceneBorder.setHeight(surfaceHeight.get());
+
+        place(rectangle, minX + edge, minY + edge, width - edge * 2, height - edge * 2);
+
+        layoutCrosshair();
+        layoutLabels();
+
+        place(expandableTopEdge, minX + edge, minY, width - edge * 2, edge);
+        place(expandableRightEdge, maxX - edge, minY + edge, edge, height - edge * 2);
+        place(expandableBottomEdge, minX + edge, maxY - edge, width - edge * 2, edge);
+        place(expandableLeftEdge, minX, minY + edge, edge, height - edge * 2);
+
+        place(expandableTopLeftNode, minX, minY, edge, edge);
+        place(expandableTopRightNode, maxX - edge, minY, edge, edge);
+        place(expandableBottomRightNode, maxX - edge, maxY - edge, edge, edge);
+        place(expandableBottomLeftNode, minX, maxY - edge, edge, edge);
+    }
+
+    /**
+     * カーソル位置の十字線を配置する。カーソルが動いたときは描画範囲の枠を配置し直さずにこれだけを呼び出す。
+     */
+    private void layoutCrosshair() {
+        double minX = properties.getMinX();
+        double minY = properties.getMinY();
+        double currentX = properties.getCurrentX();
+        double currentY = properties.getCurrentY();
+
+        horizontalGrid.setStartX(minX);
+        horizontalGrid.setEndX(minX + properties.getWidth());
+        horizontalGrid.setStartY(currentY);
+        horizontalGrid.setEndY(currentY + 1);
+
+        verticalGrid.setStartX(currentX);
+        verticalGrid.setEndX(currentX + 1);
+        verticalGrid.setStartY(minY);
+        verticalGrid.setEndY(minY + properties.getHeight());
+    }
+
+    /**
+     * 座標と大きさのラベルを、それぞれの大きさに合わせて描画範囲の隅に配置する。
+     */
+    private void layoutLabels() {
+        double minY = properties.getMinY();
+        double edge = properties.getEdgeWidth();
+        double maxX = properties.getMinX() + properties.getWidth();
+        double maxY = minY + properties.getHeight();
+
+        pointLabel.autosize();
+        pointLabel.setTranslateX(maxX - pointLabel.getWidth() - edge);
+        pointLabel.setTranslateY(maxY - pointLabel.getHeight() - edge);
+
+        rectLabelContainer.autosize();
+        rectLabelContainer.setTranslateX(maxX - rectLabelContainer.getWidth() - 10);
+        rectLabelContainer.setTranslateY(minY + edge);
+    }
+
+    private static void place(Rectangle rectangle, double x, double y, double width, double height) {
+        rectangle.setTranslateX(x);
+        rectangle.setTranslateY(y);
+        rectangle.setWidth(width);
+        rectangle.setHeight(height);
+    }
+
+    /**
+     * 描画範囲を構成するノードを一回のレイアウトパスで配置するRegion。
+     * <p>
+     * 描画範囲や縁の幅、描画面の大きさが変わったときはレイアウトを要求するだけなので、
+     * 1パルスの間に何度変更されても配置の計算は次のパルスで一度だけ行われる。
+     * カーソル座標が変わったときは枠を配置し直さず、十字線だけをパルスごとに一度配置する。
+     * ラベルの文字列が変わったときのレイアウトではラベルだけを配置し直す。
+     */
+    private class GeometryLayoutRegion extends Region {
+
+        private final PulseCoalescedTask crosshairTask = new PulseCoalescedTask(HoveringPointTrackerScene.this::layoutCrosshair);
+
+        /**
+         * 次のレイアウトパスで描画範囲の枠を配置し直すか
+         */
+        private boolean geometryInvalid = true;
+
+        GeometryLayoutRegion(Node... nodes) {
+            getChildren().addAll(nodes);
+
+            InvalidationListener layoutRequest = ob -> requestGeometryLayout();
+            properties.geometryProperty().addListener((ob, o, n) -> requestGeometryLayout());
+            properties.edgeWidthProperty().addListener(layoutRequest);
+            surfaceWidth.addListener(layoutRequest);
+            surfaceHeight.addListener(layoutRequest);
+
+            InvalidationListener crosshairRequest = ob -> crosshairTask.request();
+            properties.currentXProperty().addListener(crosshairRequest);
+            properties.currentYProperty().addListener(crosshairRequest);
+        }
+
+        private void requestGeometryLayout() {
+            geometryInvalid = true;
+            requestLayout();
+        }
+
+        @Override
+        protected void layoutChildren() {
+            if (geometryInvalid) {
+                geometryInvalid = false;
+                layoutGeometry();
+            } else {
+                layoutLabels();
+            }
+        }
     }
 
     /**
@@ -346,11 +528,11 @@ public class HoveringPointTrackerScene extends Scene {
 
             isDragDone = false;
 
-            captureSceneX = e.getSceneX();
-            captureSceneY = e.getSceneY();
+            captureSceneX = trackerX(e);
+            captureSceneY = trackerY(e);
 
-            distanceFromMinX = e.getSceneX() - rectangle.getTranslateX();
-            distanceFromMinY = e.getSceneY() - rectangle.getTranslateY();
+            distanceFromMinX = trackerX(e) - rectangle.getTranslateX();
+            distanceFromMinY = trackerY(e) - rectangle.getTranslateY();
 
             e.consume();
         });
@@ -361,27 +543,21 @@ public class HoveringPointTrackerScene extends Scene {
 
             if (dragging) {
 
-                // 上下限付きの座標
-                var x = Math.max(
-                        distanceFromMinX,
-                        Math.min(e.getSceneX(), this.getWidth() - (properties.getWidth() - distanceFromMinX))
-                );
-                var y = Math.max(
-                        distanceFromMinY,
-                        Math.min(e.getSceneY(), this.getHeight() - (properties.getHeight() - distanceFromMinY))
+                // 上下限付きの座標でドラッグ処理
+                properties.setGeometry(
+                        TrackerGeometry.dragMin(trackerX(e), distanceFromMinX, properties.getWidth(), surfaceWidth.get()),
+                        TrackerGeometry.dragMin(trackerY(e), distanceFromMinY, properties.getHeight(), surfaceHeight.get()),
+                        properties.getWidth(),
+                        properties.getHeight()
                 );
-
-                // ドラッグ処理
-                properties.setMinX(x - distanceFromMinX);
-                properties.setMinY(y - distanceFromMinY);
                 // ドラッグ中も座標を追いかけるように
                 updateCurrentCursorPositionHandler(e);
 
             } else {
 
                 // 動かした距離が遊び範囲を超えたときにドラッグを有効化
-                dragging = (PLAY_DRAG_START < Math.abs(e.getSceneX() - captureSceneX)) ||
-                        (PLAY_DRAG_START < Math.abs(e.getSceneY() - captureSceneY));
+                dragging = (PLAY_DRAG_START < Math.abs(trackerX(e) - captureSceneX)) ||
+                        (PLAY_DRAG_START < Math.abs(trackerY(e) - captureSceneY));
 
             }
 
@@ -403,7 +579,7 @@ public class HoveringPointTrackerScene extends Scene {
                 return;
             }
 
-            stretch(-1, e.getSceneY(), -1, -1);
+            stretch(-1, trackerY(e), -1, -1);
             updateCurrentCursorPositionHandler(e);
             e.consume();
         });
@@ -412,7 +588,7 @@ public class HoveringPointTrackerScene extends Scene {
                 return;
             }
 
-            stretch(-1, -1, e.getSceneX(), -1);
+            stretch(-1, -1, trackerX(e), -1);
             updateCurrentCursorPositionHandler(e);
             e.consume();
         });
@@ -421,7 +597,7 @@ public class HoveringPointTrackerScene extends Scene {
                 return;
             }
 
-            stretch(-1, -1, -1, e.getSceneY());
+            stretch(-1, -1, -1, trackerY(e));
             updateCurrentCursorPositionHandler(e);
             e.consume();
         });
@@ -430,7 +606,7 @@ public class HoveringPointTrackerScene extends Scene {
                 return;
             }
 
-            stretch(e.getSceneX(), -1, -1, -1);
+            stretch(trackerX(e), -1, -1, -1);
             updateCurrentCursorPositionHandler(e);
             e.consume();
         });
@@ -439,7 +615,7 @@ public class HoveringPointTrackerScene extends Scene {
                 return;
             }
 
-            stretch(e.getSceneX(), e.getSceneY(), -1, -1);
+            stretch(trackerX(e), trackerY(e), -1, -1);
             updateCurrentCursorPositionHandler(e);
             e.consume();
         });
@@ -448,7 +624,7 @@ public class HoveringPointTrackerScene extends Scene {
                 return;
             }
 
-            stretch(-1, e.getSceneY(), e.getSceneX(), -1);
+            stretch(-1, trackerY(e), trackerX(e), -1);
             updateCurrentCursorPositionHandler(e);
             e.consume();
         });
@@ -457,7 +633,7 @@ public class HoveringPointTrackerScene extends Scene {
                 return;
             }
 
-            stretch(-1, -1, e.getSceneX(), e.getSceneY());
+            stretch(-1, -1, trackerX(e), trackerY(e));
             updateCurrentCursorPositionHandler(e);
             e.consume();
         });
@@ -466,22 +642,138 @@ public class HoveringPointTrackerScene extends Scene {
                 return;
             }
 
-            stretch(e.getSceneX(), -1, -1, e.getSceneY());
+            stretch(trackerX(e), -1, -1, trackerY(e));
             updateCurrentCursorPositionHandler(e);
             e.consume();
         });
     }
 
+    /**
+     * パルスごとに適用するポインタのX座標
+     */
+    private double pendingPointerX = 0;
+
+    /**
+     * パルスごとに適用するポインタのY座標
+     */
+    private double pendingPointerY = 0;
+
+    /**
+     * 直近のポインタの座標をパルスごとに一度だけ適用するタスク
+     */
+    private final PulseCoalescedTask pointerUpdateTask = new PulseCoalescedTask(
+            () -> updateCurrentCursorPosition(pendingPointerX, pendingPointerY));
+
+    /**
+     * すべてのポインタイベントを受け取るリスナ
+     */
+    private final List<PointerListener> pointerListeners = new ArrayList<>();
+
     /**
      * 引数の{@link MouseEvent}に基づいて現在のポインタの座標を更新する。
+     * <p>
+     * {@link #isCoalescePointerEvents()}が有効な場合は、直近の座標のみを記録して次のパルスで適用する。
      * @param event マウスイベント
      */
     private void updateCurrentCursorPositionHandler(MouseEvent event) {
+        PointerEventType type = event.getEventType() == MouseEvent.MOUSE_DRAGGED
+                ? PointerEventType.DRAGGED
+                : PointerEventType.MOVED;
+        firePointerEvent(type, trackerX(event), trackerY(event));
+
+        if (dwellHeatmapLayer != null && dwellHeatmapLayer.isVisible()) {
+            recordDwell(trackerX(event), trackerY(event));
+        }
+
+        if (isCoalescePointerEvents()) {
+            pendingPointerX = trackerX(event);
+            pendingPointerY = trackerY(event);
+            pointerUpdateTask.request();
+        } else {
+            updateCurrentCursorPosition(trackerX(event), trackerY(event));
+        }
+    }
+
+    /**
+     * 登録されているすべての{@link PointerListener}にポインタイベントを通知する。
+     * @param type イベントの種類
+     * @param sceneX Scene上のX座標
+     * @param sceneY Scene上のY座標
+     */
+    private void firePointerEvent(PointerEventType type, double sceneX, double sceneY) {
+        if (pointerListeners.isEmpty()) {
+            return;
+        }
+
+        long timestamp = System.nanoTime();
+        double x = clampX(sceneX);
+        double y = clampY(sceneY);
+
+        for (int i = 0; i < pointerListeners.size(); i++) {
+            pointerListeners.get(i).pointerChanged(type, timestamp, x, y);
+        }
+    }
+
+    /**
+     * 現在のポインタの座標を更新する。
+     * @param sceneX Scene上のX座標
+     * @param sceneY Scene上のY座標
+     */
+    private void updateCurrentCursorPosition(double sceneX, double sceneY) {
         // 描画範囲内でのみ座標を割り当てる
-        double x = Math.max(properties.getMinX(), Math.min(event.getSceneX(), properties.getMinX() + properties.getWidth()));
-        double y = Math.max(properties.getMinY(), Math.min(event.getSceneY(), properties.getMinY() + properties.getHeight()));
-        properties.currentXPropertyWrapper().set(x);
-        properties.currentYPropertyWrapper().set(y);
+        properties.setCurrentPosition(clampX(sceneX), clampY(sceneY));
+    }
+
+    private double clampX(double sceneX) {
+        return Math.max(properties.getMinX(), Math.min(sceneX, properties.getMinX() + properties.getWidth()));
+    }
+
+    private double clampY(double sceneY) {
+        return Math.max(properties.getMinY(), Math.min(sceneY, properties.getMinY() + properties.getHeight()));
+    }
+
+    private BooleanProperty coalescePointerEvents;
+
+    /**
+     * ポインタの座標の更新をパルスごとに間引くか。
+     * <p>
+     * 有効な場合、現在の座標はマウスイベントごとではなく描画フレームごとに一度だけ更新される。
+     * すべてのイベントを受け取る必要がある場合は{@link #addPointerListener(PointerListener)}を使用する。
+     */
+    public boolean isCoalescePointerEvents() {
+        if (coalescePointerEvents == null) {
+            return true;
+        }
+        return coalescePointerEventsProperty().get();
+    }
+
+    public BooleanProperty coalescePointerEventsProperty() {
+        if (coalescePointerEvents == null) {
+            coalescePointerEvents = new SimpleBooleanProperty(true);
+            coalescePointerEvents.addListener((ob, o, n) -> {
+                // 間引きを無効にしたときは保留中の座標を即座に適用する
+                if (!n) {
+                    pointerUpdateTask.flush();
+                }
+            });
+        }
+        return coalescePointerEvents;
+    }
+
+    public void setCoalescePointerEvents(boolean coalescePointerEvents) {
+        this.coalescePointerEventsProperty().set(coalescePointerEvents);
+    }
+
+    /**
+     * 間引かれる前のすべてのポインタイベントを受け取るリスナを登録する。
+     * @param listener リスナ
+     */
+    public void addPointerListener(PointerListener listener) {
+        pointerListeners.add(listener);
+    }
+
+    public void removePointerListener(PointerListener listener) {
+        pointerListeners.remove(listener);
     }
 
     private DoubleExpression minWidthLimit;
@@ -503,27 +795,12 @@ public class HoveringPointTrackerScene extends Scene {
         double widthLimit = minWidthLimit.get();
         double heightLimit = minHeightLimit.get();
 
-        if (0d <= minX) {
-            minX = Math.max(0, Math.min(properties.getMinX() + properties.getWidth() - widthLimit, minX));
-            double deltaX = properties.getMinX() - minX;
-            properties.setMinX(minX);
-            properties.setWidth(properties.getWidth() + deltaX);
-        }
-        if (0d <= minY) {
-            minY = Math.max(0, Math.min(properties.getMinY() + properties.getHeight() - heightLimit, minY));
-            double deltaY = properties.getMinY() - minY;
-            properties.setMinY(minY);
-            properties.setHeight(properties.getHeight() + deltaY);
-        }
-        if (0d <= maxX) {
-            maxX = Math.max(properties.getMinX() + widthLimit, Math.min(maxX, getWidth()));
-            double deltaX = maxX - (properties.getMinX() + properties.getWidth());
-            properties.setWidth(properties.getWidth() + deltaX);
-        }
-        if (0d <= maxY) {
-            maxY = Math.max(properties.getMinY() + heightLimit, Math.min(maxY, getHeight()));
-            double deltaY = maxY - (properties.getMinY() + properties.getHeight());
-            properties.setHeight(properties.getHeight() + deltaY);
+        long start = performanceMetrics == null ? 0 : System.nanoTime();
+
+        TrackerGeometry.stretch(properties, minX, minY, maxX, maxY, widthLimit, heightLimit, surfaceWidth.get(), surfaceHeight.get());
+
+        if (performanceMetrics != null) {
+            performanceMetrics.recordStretch(System.nanoTime() - start);
         }
     }
 
@@ -563,6 +840,8 @@ public class HoveringPointTrackerScene extends Scene {
                 return;
             }
 
+            // メニューを表示している間はマウスイベントが届かないため滞留時間を積算しない
+            pauseDwellHeatmap();
             contextMenu.show(rectangle, e.getScreenX(), e.getScreenY());
             e.consume();
         });
@@ -584,14 +863,31 @@ public class HoveringPointTrackerScene extends Scene {
 
     private static final double CLICK_POINT_CIRCLE_RADIUS = 3;
 
-    private LinkedList<Circle> clickPoints;
+    /**
+     * クリックポイントを描画するレイヤ。
+     */
+    private ClickPointLayer clickPointLayer;
+
+    /**
+     * クリックしたときの波紋エフェクトを表示するレイヤ。
+     */
+    private RippleLayer rippleLayer;
 
-    private Tooltip clickPointTooltip;
+    /**
+     * カーソル位置のクリックポイントの座標を表示するツールチップ。
+     */
+    private ClickPointTooltip clickPointTooltip;
 
     /**
      * 描画範囲をクリックするとその座標をポイントする円を描画するイベントを付与する。
      */
     private void addClickPointsEvent() {
+        clickPointLayer = new ClickPointLayer(properties, CLICK_POINT_CIRCLE_RADIUS);
+
+        rippleLayer = new RippleLayer(properties, CLICK_POINT_CIRCLE_RADIUS);
+
+        clickPointTooltip = new ClickPointTooltip(this, clickPointLayer.getPoints(), CLICK_POINT_CIRCLE_RADIUS);
+
         rectangle.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
             if (e.getButton() != MouseButton.PRIMARY) {
                 return;
@@ -604,142 +900,475 @@ public class HoveringPointTrackerScene extends Scene {
             // Controlを押しながらクリックすると直近のクリックポイントを削除
             if (e.isControlDown()) {
 
-                if (clickPoints == null || clickPoints.isEmpty()) {
-                    return;
+                if (clickPointLayer.removeLast()) {
+                    clickPointTooltip.hide();
                 }
 
-                root.getChildren().remove(clickPoints.pollLast());
-
             } else {
 
-                Circle circle = new Circle(CLICK_POINT_CIRCLE_RADIUS);
-                circle.fillProperty().bind(properties.clickPointColorProperty());
-                circle.setTranslateX(e.getSceneX());
-                circle.setTranslateY(e.getSceneY());
-                // クリックポイントにカーソルを合わせると座標をポップアップするように。
-                circle.setOnMouseEntered(e2 -> {
-                    if (getWindow() == null) {
-                        return;
-                    }
-                    clickPointTooltip.setText(String.format("(%4.0f,%4.0f)", e.getSceneX(), e.getSceneY()));
-                    clickPointTooltip.show(getWindow(), e.getSceneX(), e.getSceneY() + 10);
-                });
-                circle.setOnMouseExited(e2 -> clickPointTooltip.hide());
-
-                root.getChildren().add(circle);
-
-                if (clickPoints == null) {
-                    clickPoints = new LinkedList<>();
-                    clickPointTooltip = new Tooltip();
-                    clickPointTooltip.setFont(Font.font("monospaced", 13));
-                }
-
-                clickPoints.add(circle);
+                addClickPoint(trackerX(e), trackerY(e));
+                firePointerEvent(PointerEventType.CLICKED, trackerX(e), trackerY(e));
 
                 // 波紋エフェクトの表示
-                Circle ripple = new Circle(CLICK_POINT_CIRCLE_RADIUS);
-                ripple.setMouseTransparent(true);
-                ripple.setFill(Color.TRANSPARENT);
-                ripple.strokeProperty().bind(properties.clickPointColorProperty());
-                ripple.setTranslateX(e.getSceneX());
-                ripple.setTranslateY(e.getSceneY());
-                root.getChildren().add(ripple);
-
-                // アニメーションの実行
-                KeyValue scaleKeyValue = new KeyValue(ripple.radiusProperty(), ripple.getRadius() * 8);
-                KeyValue fadeKeyValue = new KeyValue(ripple.opacityProperty(), 0);
-                KeyFrame keyFrame = new KeyFrame(Duration.seconds(1), scaleKeyValue, fadeKeyValue);
-                Timeline timeline = new Timeline(keyFrame);
-                timeline.setOnFinished(e2 -> root.getChildren().remove(ripple));
-                timeline.play();
+                rippleLayer.play(trackerX(e), trackerY(e));
 
             }
 
             e.consume();
         });
 
+        // クリックポイントにカーソルを合わせると座標をポップアップするように。
+        addEventHandler(MouseEvent.MOUSE_MOVED, e -> clickPointTooltip.update(trackerX(e), trackerY(e)));
+
         // 描画範囲からはみ出したクリックポイントを削除する
-        properties.minXProperty().addListener((ob, o, n) -> removeNotIntersectClickPoints());
-        properties.minYProperty().addListener((ob, o, n) -> removeNotIntersectClickPoints());
-        properties.widthProperty().addListener((ob, o, n) -> removeNotIntersectClickPoints());
-        properties.heightProperty().addListener((ob, o, n) -> removeNotIntersectClickPoints());
+        properties.geometryProperty().addListener((ob, o, n) -> removeNotIntersectClickPoints());
+    }
+
+    /**
+     * 指定した座標にクリックポイントを追加する。波紋エフェクトは表示しない。
+     * @param sceneX Scene上のX座標
+     * @param sceneY Scene上のY座標
+     */
+    void addClickPoint(double sceneX, double sceneY) {
+        clickPointLayer.add(sceneX, sceneY);
+    }
+
+    int getClickPointCount() {
+        return clickPointLayer.getPoints().size();
+    }
+
+    /**
+     * 直近のパルスの時点のクリックポイント。任意のスレッドから呼び出せる。
+     * {@link #setClickPointSnapshotEnabled(boolean)}で有効にしていないときは常に空。
+     */
+    public ClickPointSnapshot getClickPointSnapshot() {
+        return clickPointLayer.getSnapshot();
+    }
+
+    /**
+     * クリックポイントのスナップショットを作成するか設定する。他のスレッドから参照する間だけ有効にする。
+     */
+    public void setClickPointSnapshotEnabled(boolean enabled) {
+        clickPointLayer.setSnapshotEnabled(enabled);
     }
 
     /**
      * 描画範囲から出たクリックポイントを削除する
      */
     private void removeNotIntersectClickPoints() {
-        if (clickPoints == null || clickPoints.isEmpty()) {
-            return;
-        }
+        long start = performanceMetrics == null ? 0 : System.nanoTime();
 
-        Rectangle2D rectangle = new Rectangle2D (
+        int removed = clickPointLayer.retainIntersecting(
                 properties.getMinX(),
                 properties.getMinY(),
                 properties.getWidth(),
                 properties.getHeight()
         );
+        if (0 < removed) {
+            clickPointTooltip.hide();
+        }
+
+        if (performanceMetrics != null) {
+            performanceMetrics.recordClip(System.nanoTime() - start);
+        }
+    }
+
+    public void clearClickPoints() {
+        clickPointLayer.clear();
+        clickPointTooltip.hide();
+    }
 
-        Iterator<Circle> iterator = clickPoints.iterator();
-        while (iterator.hasNext()) {
-            Circle circle = iterator.next();
+    /**
+     * 性能指標の記録先
+     */
+    private PerformanceMetrics performanceMetrics;
 
-            Rectangle2D circleRectangle = new Rectangle2D(
-                    circle.getTranslateX(),
-                    circle.getTranslateY(),
-                    CLICK_POINT_CIRCLE_RADIUS,
-                    CLICK_POINT_CIRCLE_RADIUS
-            );
+    /**
+     * 性能指標を記録するためのリスナを登録したか
+     */
+    private boolean performanceListenersInstalled = false;
 
-            if (!rectangle.intersects(circleRectangle)) {
-                root.getChildren().remove(circle);
-                iterator.remove();
+    /**
+     * rootの子ノードが変更されてからノード数を数え直していないか
+     */
+    private boolean nodeCountDirty = true;
+
+    private long pulseStartedAt = 0;
+
+    public PerformanceMetrics getPerformanceMetrics() {
+        return performanceMetrics;
+    }
+
+    /**
+     * 性能指標の記録先を設定する。nullを設定すると記録を停止する。
+     * @param performanceMetrics 性能指標の記録先
+     */
+    public void setPerformanceMetrics(PerformanceMetrics performanceMetrics) {
+        if (this.performanceMetrics != null) {
+            removePointerListener(this.performanceMetrics);
+        }
+        this.performanceMetrics = performanceMetrics;
+        if (performanceMetrics == null) {
+            return;
+        }
+
+        addPointerListener(performanceMetrics);
+        nodeCountDirty = true;
+
+        if (performanceListenersInstalled) {
+            return;
+        }
+        performanceListenersInstalled = true;
+
+        // 波紋エフェクトなどでノードが増減したときは次のパルスで数え直す
+        root.getChildren().addListener((ListChangeListener<Node>) c -> nodeCountDirty = true);
+
+        addPreLayoutPulseListener(() -> pulseStartedAt = System.nanoTime());
+        addPostLayoutPulseListener(() -> {
+            if (this.performanceMetrics == null) {
+                return;
+            }
+            if (pulseStartedAt != 0) {
+                this.performanceMetrics.recordPulse(System.nanoTime() - pulseStartedAt);
             }
+            if (nodeCountDirty) {
+                nodeCountDirty = false;
+                this.performanceMetrics.setNodeCount(countNodes(root));
+            }
+            this.performanceMetrics.setClickPointCount(clickPointLayer.getPoints().size());
+        });
+    }
+
+    private static int countNodes(Parent parent) {
+        int count = 0;
+        for (Node child : parent.getChildrenUnmodifiable()) {
+            count++;
+            if (child instanceof Parent p) {
+                count += countNodes(p);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * ウインドウを描画範囲に合わせるときに描画範囲の外側に確保する余白。波紋エフェクトが収まる大きさ
+     */
+    private static final double WINDOW_MARGIN = 32;
+
+    /**
+     * カーソルが留まっていた時間を表示するレイヤ。最初に表示するときに生成する
+     */
+    private DwellHeatmapLayer dwellHeatmapLayer;
 
+    private int dwellHeatmapCellSize = DwellHeatmapLayer.DEFAULT_CELL_SIZE;
+
+    /**
+     * 描画面の大きさの変更をヒートマップに反映するリスナ。レイヤを作り直しても使い回す
+     */
+    private InvalidationListener dwellHeatmapResize;
+
+    private BooleanProperty dwellHeatmap;
+
+    /**
+     * 描画範囲内でカーソルが留まっていた時間をヒートマップで表示するか。
+     * <p>
+     * 表示している間はマウスイベントごとに滞留時間を積算する。非表示にしても積算した値は保持する。
+     */
+    public boolean isDwellHeatmap() {
+        if (dwellHeatmap == null) {
+            return false;
+        }
+        return dwellHeatmapProperty().get();
+    }
+
+    public BooleanProperty dwellHeatmapProperty() {
+        if (dwellHeatmap == null) {
+            dwellHeatmap = new SimpleBooleanProperty(false);
+            dwellHeatmap.addListener((ob, o, n) -> updateDwellHeatmap());
         }
+        return dwellHeatmap;
+    }
 
+    public void setDwellHeatmap(boolean dwellHeatmap) {
+        this.dwellHeatmapProperty().set(dwellHeatmap);
     }
 
-    public void clearClickPoints() {
-        if (clickPoints == null) {
+    /**
+     * ヒートマップのセルの一辺の大きさを設定する。大きさを変えると積算した値は消去される。
+     * @param cellSize セルの一辺の大きさ
+     */
+    public void setDwellHeatmapCellSize(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+        }
+        if (cellSize == dwellHeatmapCellSize) {
+            return;
+        }
+        dwellHeatmapCellSize = cellSize;
+
+        // 次に表示するときに作り直す
+        if (dwellHeatmapLayer != null) {
+            root.getChildren().remove(dwellHeatmapLayer);
+            dwellHeatmapLayer = null;
+            updateDwellHeatmap();
+        }
+    }
+
+    /**
+     * ヒートマップに積算した値を消去する。
+     */
+    public void clearDwellHeatmap() {
+        if (dwellHeatmapLayer != null) {
+            dwellHeatmapLayer.clear();
+        }
+    }
+
+    private void updateDwellHeatmap() {
+        if (!isDwellHeatmap()) {
+            if (dwellHeatmapLayer != null) {
+                dwellHeatmapLayer.setVisible(false);
+                dwellHeatmapLayer.pause();
+            }
             return;
         }
 
-        root.getChildren().removeAll(clickPoints);
-        clickPoints.clear();
+        if (dwellHeatmapLayer == null) {
+            if (dwellHeatmapResize == null) {
+                dwellHeatmapResize = ob -> {
+                    double width = surfaceWidth.get();
+                    double height = surfaceHeight.get();
+                    if (dwellHeatmapLayer != null) {
+                        dwellHeatmapLayer.setSurfaceSize(width, height);
+                    }
+                };
+                surfaceWidth.addListener(dwellHeatmapResize);
+                surfaceHeight.addListener(dwellHeatmapResize);
+            }
+
+            dwellHeatmapLayer = new DwellHeatmapLayer(dwellHeatmapCellSize);
+            dwellHeatmapLayer.setSurfaceSize(surfaceWidth.get(), surfaceHeight.get());
+            dwellHeatmapLayer.setView(viewMinX, viewMinY, viewWidth, viewHeight);
+
+            // クリックポイントの下に表示する
+            root.getChildren().add(root.getChildren().indexOf(clickPointLayer), dwellHeatmapLayer);
+        }
+        dwellHeatmapLayer.setVisible(true);
+    }
+
+    /**
+     * 次のマウスイベントまでの時間を滞留時間に積算しないようにする。
+     */
+    private void pauseDwellHeatmap() {
+        if (dwellHeatmapLayer != null) {
+            dwellHeatmapLayer.pause();
+        }
+    }
+
+    /**
+     * カーソルの滞留時間を積算する。描画範囲の外にあるときは、範囲に戻るまで積算しない。
+     */
+    private void recordDwell(double x, double y) {
+        boolean inside = properties.getMinX() <= x && x < properties.getMinX() + properties.getWidth()
+                && properties.getMinY() <= y && y < properties.getMinY() + properties.getHeight();
+        if (inside) {
+            dwellHeatmapLayer.record(System.nanoTime(), x, y);
+        } else {
+            dwellHeatmapLayer.record(System.nanoTime(), Double.NaN, Double.NaN);
+        }
+    }
+
+    /**
+     * 描画範囲を配置できる領域の幅。ウインドウを描画範囲に合わせているときもディスプレイの幅になる
+     */
+    private final DoubleProperty surfaceWidth = new SimpleDoubleProperty();
+
+    /**
+     * 描画範囲を配置できる領域の高さ
+     */
+    private final DoubleProperty surfaceHeight = new SimpleDoubleProperty();
+
+    /**
+     * ウインドウを描画範囲に合わせているか。{@link #updateWindowBounds()}で確定する
+     */
+    private boolean windowFitted = false;
+
+    /**
+     * ウインドウを描画範囲に合わせているときのディスプレイの左上の座標
+     */
+    private double screenMinX = 0;
+
+    private double screenMinY = 0;
+
+    /**
+     * ウインドウに表示される領域。ディスプレイの左上を原点とする
+     */
+    private double viewMinX = 0;
+
+    private double viewMinY = 0;
+
+    private double viewWidth = 0;
+
+    private double viewHeight = 0;
+
+    /**
+     * ウインドウの位置と大きさをパルスごとに一度だけ更新するタスク
+     */
+    private final PulseCoalescedTask windowBoundsTask = new PulseCoalescedTask(this::updateWindowBounds);
+
+    private BooleanProperty fitWindowToGeometry;
+
+    /**
+     * ウインドウを描画範囲とその周囲の余白だけの大きさにするか。
+     * <p>
+     * 無効な場合、ウインドウはディスプレイ全体を覆う。有効な場合は描画範囲の移動や伸長に合わせてウインドウを移動・リサイズするため、
+     * 透過ウインドウの合成やテクスチャの転送がディスプレイ全体ではなく描画範囲の周囲だけになる。
+     * どちらの場合もノードの座標はディスプレイの左上を原点とする。
+     */
+    public boolean isFitWindowToGeometry() {
+        if (fitWindowToGeometry == null) {
+            return false;
+        }
+        return fitWindowToGeometryProperty().get();
+    }
+
+    public BooleanProperty fitWindowToGeometryProperty() {
+        if (fitWindowToGeometry == null) {
+            fitWindowToGeometry = new SimpleBooleanProperty(false);
+            fitWindowToGeometry.addListener((ob, o, n) -> updateWindowBounds());
+        }
+        return fitWindowToGeometry;
+    }
+
+    public void setFitWindowToGeometry(boolean fitWindowToGeometry) {
+        this.fitWindowToGeometryProperty().set(fitWindowToGeometry);
+    }
+
+    /**
+     * マウスイベントのディスプレイの左上を原点とするX座標。
+     */
+    private double trackerX(MouseEvent event) {
+        return windowFitted ? event.getScreenX() - screenMinX : event.getSceneX();
+    }
+
+    /**
+     * マウスイベントのディスプレイの左上を原点とするY座標。
+     */
+    private double trackerY(MouseEvent event) {
+        return windowFitted ? event.getScreenY() - screenMinY : event.getSceneY();
     }
 
     private void addScreenSizeListener() {
+        surfaceWidth.bind(widthProperty());
+        surfaceHeight.bind(heightProperty());
+
+        // ウインドウがディスプレイ全体を覆っているときは描画面全体が表示される
+        ChangeListener<Number> surfaceSizeListener = (ob, o, n) -> {
+            if (!windowFitted) {
+                updateView(0, 0, surfaceWidth.get(), surfaceHeight.get());
+            }
+        };
+        surfaceWidth.addListener(surfaceSizeListener);
+        surfaceHeight.addListener(surfaceSizeListener);
+        updateView(0, 0, surfaceWidth.get(), surfaceHeight.get());
+
         // プロパティのスクリーン設定が変更されたときにウインドウのサイズを変更するリスナを登録
         properties.screenProperty().addListener((ob, o, n) -> {
             if (n == null) {
                 return;
             }
-
-            Rectangle2D bounds = n.getBounds();
-
-            Window window = getWindow();
-            window.setX(bounds.getMinX());
-            window.setY(bounds.getMinY());
-            window.setWidth(bounds.getWidth());
-            window.setHeight(bounds.getHeight());
+            updateWindowBounds();
         });
         // 所属する親ウインドウが変更されたときにサイズを変更するリスナを登録
         windowProperty().addListener((ob, o, n) -> {
             if (n == null) {
                 return;
             }
-            if (properties.getScreen() == null) {
-                return;
+            updateWindowBounds();
+        });
+        // ウインドウを描画範囲に合わせているときは描画範囲の変更に追従する
+        properties.geometryProperty().addListener((ob, o, n) -> {
+            if (windowFitted) {
+                windowBoundsTask.request();
             }
+        });
+    }
 
-            Rectangle2D bounds = properties.getScreen().getBounds();
+    /**
+     * ウインドウの位置と大きさを更新する。
+     */
+    private void updateWindowBounds() {
+        windowBoundsTask.cancel();
 
-            n.setX(bounds.getMinX());
-            n.setY(bounds.getMinY());
-            n.setWidth(bounds.getWidth());
-            n.setHeight(bounds.getHeight());
-        });
+        Window window = getWindow();
+        Screen screen = properties.getScreen();
+        if (window == null || screen == null) {
+            return;
+        }
+
+        Rectangle2D bounds = screen.getBounds();
+
+        if (!isFitWindowToGeometry()) {
+
+            if (windowFitted) {
+                windowFitted = false;
+                sceneBorder.setVisible(true);
+                root.setTranslateX(0);
+                root.setTranslateY(0);
+                surfaceWidth.bind(widthProperty());
+                surfaceHeight.bind(heightProperty());
+                updateView(0, 0, surfaceWidth.get(), surfaceHeight.get());
+            }
+
+            window.setX(bounds.getMinX());
+            window.setY(bounds.getMinY());
+            window.setWidth(bounds.getWidth());
+            window.setHeight(bounds.getHeight());
+            return;
+        }
+
+        if (!windowFitted) {
+            windowFitted = true;
+            // ディスプレイの境界線はウインドウの外になるため、キャッシュの大きさに含めないように非表示にする
+            sceneBorder.setVisible(false);
+            surfaceWidth.unbind();
+            surfaceHeight.unbind();
+        }
+        screenMinX = bounds.getMinX();
+        screenMinY = bounds.getMinY();
+        surfaceWidth.set(bounds.getWidth());
+        surfaceHeight.set(bounds.getHeight());
+
+        // ディスプレイからはみ出さない範囲で描画範囲と余白を覆う
+        double minX = Math.max(0, properties.getMinX() - WINDOW_MARGIN);
+        double minY = Math.max(0, properties.getMinY() - WINDOW_MARGIN);
+        double maxX = Math.min(bounds.getWidth(), properties.getMinX() + properties.getWidth() + WINDOW_MARGIN);
+        double maxY = Math.min(bounds.getHeight(), properties.getMinY() + properties.getHeight() + WINDOW_MARGIN);
+
+        // ウインドウの移動と同じフレームで内容を逆方向にずらし、ディスプレイ上の位置を保つ
+        root.setTranslateX(-minX);
+        root.setTranslateY(-minY);
+        updateView(minX, minY, Math.max(1, maxX - minX), Math.max(1, maxY - minY));
+
+        window.setX(screenMinX + minX);
+        window.setY(screenMinY + minY);
+        window.setWidth(Math.max(1, maxX - minX));
+        window.setHeight(Math.max(1, maxY - minY));
+    }
+
+    /**
+     * ウインドウに表示される領域を設定し、描画面全体を覆うレイヤの大きさをその領域に合わせる。
+     * レイヤがディスプレイ全体の大きさのテクスチャを持たないようにする。
+     */
+    private void updateView(double minX, double minY, double width, double height) {
+        viewMinX = minX;
+        viewMinY = minY;
+        viewWidth = width;
+        viewHeight = height;
+
+        clickPointLayer.setView(minX, minY, width, height);
+        if (dwellHeatmapLayer != null) {
+            dwellHeatmapLayer.setView(minX, minY, width, height);
+        }
     }
 
 }
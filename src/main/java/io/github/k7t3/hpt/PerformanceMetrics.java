@@ -0,0 +1,236 @@
+package io.github.k7t3.hpt;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link PerformanceMetricsMXBean}の実装。
+ * <p>
+ * 計測値は{@link LongAdder}と{@link LatencyHistogram}に記録するため、
+ * JavaFX Application Threadでの記録はロックを取得しない。集計はMXBeanの属性を読み出したときに行う。
+ */
+public class PerformanceMetrics implements PerformanceMetricsMXBean, PointerListener {
+
+    /**
+     * 登録に使用する既定のObjectName。
+     */
+    public static final String OBJECT_NAME = "io.github.k7t3.hpt:type=PerformanceMetrics";
+
+    private static final PointerEventType[] TYPES = PointerEventType.values();
+
+    /**
+     * イベントレートを再計算する最小の間隔
+     */
+    private static final long RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final LatencyHistogram pulseTime = new LatencyHistogram();
+
+    private final LatencyHistogram stretchTime = new LatencyHistogram();
+
+    private final LatencyHistogram clipTime = new LatencyHistogram();
+
+    private final LatencyHistogram persistLatency = new LatencyHistogram();
+
+    private final LongAdder[] eventCounts = new LongAdder[TYPES.length];
+
+    private volatile int nodeCount = 0;
+
+    private volatile int clickPointCount = 0;
+
+    // 以下はイベントレートの集計用。thisで同期する
+
+    private final long[] rateCounts = new long[TYPES.length];
+
+    private final double[] rates = new double[TYPES.length];
+
+    private long rateSampledAt = System.nanoTime();
+
+    public PerformanceMetrics() {
+        for (int i = 0; i < eventCounts.length; i++) {
+            eventCounts[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void pointerChanged(PointerEventType type, long timestamp, double x, double y) {
+        eventCounts[type.ordinal()].increment();
+    }
+
+    void recordPulse(long nanos) {
+        pulseTime.record(nanos);
+    }
+
+    void recordStretch(long nanos) {
+        stretchTime.record(nanos);
+    }
+
+    void recordClip(long nanos) {
+        clipTime.record(nanos);
+    }
+
+    /**
+     * プロパティの読み込み・保存にかかった時間を記録する。
+     * @param nanos 所要時間
+     */
+    public void recordPersist(long nanos) {
+        persistLatency.record(nanos);
+    }
+
+    void setNodeCount(int nodeCount) {
+        this.nodeCount = nodeCount;
+    }
+
+    void setClickPointCount(int clickPointCount) {
+        this.clickPointCount = clickPointCount;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    @Override
+    public long getPulseCount() {
+        return pulseTime.getCount();
+    }
+
+    @Override
+    public double getPulseTimeP50Millis() {
+        return toMillis(pulseTime.getPercentile(50));
+    }
+
+    @Override
+    public double getPulseTimeP90Millis() {
+        return toMillis(pulseTime.getPercentile(90));
+    }
+
+    @Override
+    public double getPulseTimeP99Millis() {
+        return toMillis(pulseTime.getPercentile(99));
+    }
+
+    @Override
+    public double getPulseTimeMaxMillis() {
+        return toMillis(pulseTime.getMax());
+    }
+
+    @Override
+    public long getMovedEventCount() {
+        return eventCounts[PointerEventType.MOVED.ordinal()].sum();
+    }
+
+    @Override
+    public long getDraggedEventCount() {
+        return eventCounts[PointerEventType.DRAGGED.ordinal()].sum();
+    }
+
+    @Override
+    public long getClickedEventCount() {
+        return eventCounts[PointerEventType.CLICKED.ordinal()].sum();
+    }
+
+    @Override
+    public double getMovedEventsPerSecond() {
+        return getEventsPerSecond(PointerEventType.MOVED);
+    }
+
+    @Override
+    public double getDraggedEventsPerSecond() {
+        return getEventsPerSecond(PointerEventType.DRAGGED);
+    }
+
+    @Override
+    public double getClickedEventsPerSecond() {
+        return getEventsPerSecond(PointerEventType.CLICKED);
+    }
+
+    /**
+     * 前回の集計から{@link #RATE_INTERVAL_NANOS}以上経過していれば、すべての種類のレートを再計算する。
+     */
+    private synchronized double getEventsPerSecond(PointerEventType type) {
+        long now = System.nanoTime();
+        long elapsed = now - rateSampledAt;
+        if (RATE_INTERVAL_NANOS <= elapsed) {
+            for (int i = 0; i < TYPES.length; i++) {
+                long count = eventCounts[i].sum();
+                rates[i] = Math.max(0, count - rateCounts[i]) * 1e9 / elapsed;
+                rateCounts[i] = count;
+            }
+            rateSampledAt = now;
+        }
+        return rates[type.ordinal()];
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public int getClickPointCount() {
+        return clickPointCount;
+    }
+
+    @Override
+    public long getStretchCount() {
+        return stretchTime.getCount();
+    }
+
+    @Override
+    public double getStretchTimeTotalMillis() {
+        return toMillis(stretchTime.getSum());
+    }
+
+    @Override
+    public double getStretchTimeP99Millis() {
+        return toMillis(stretchTime.getPercentile(99));
+    }
+
+    @Override
+    public long getClipCount() {
+        return clipTime.getCount();
+    }
+
+    @Override
+    public double getClipTimeTotalMillis() {
+        return toMillis(clipTime.getSum());
+    }
+
+    @Override
+    public double getClipTimeP99Millis() {
+        return toMillis(clipTime.getPercentile(99));
+    }
+
+    @Override
+    public long getPersistCount() {
+        return persistLatency.getCount();
+    }
+
+    @Override
+    public double getPersistLatencyP50Millis() {
+        return toMillis(persistLatency.getPercentile(50));
+    }
+
+    @Override
+    public double getPersistLatencyMaxMillis() {
+        return toMillis(persistLatency.getMax());
+    }
+
+    @Override
+    public void reset() {
+        pulseTime.reset();
+        stretchTime.reset();
+        clipTime.reset();
+        persistLatency.reset();
+        for (LongAdder count : eventCounts) {
+            count.reset();
+        }
+        synchronized (this) {
+            for (int i = 0; i < TYPES.length; i++) {
+                rateCounts[i] = 0;
+                rates[i] = 0;
+            }
+            rateSampledAt = System.nanoTime();
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package io.github.k7t3.hpt;
+
+/**
+ * 実行中のトラッカーの性能指標を公開するMXBean。
+ * <p>
+ * 所要時間はミリ秒単位で、起動時または{@link #reset()}を呼び出してからの累計から求める。
+ */
+public interface PerformanceMetricsMXBean {
+
+    /**
+     * 計測したパルスの数。
+     */
+    long getPulseCount();
+
+    /**
+     * パルスの所要時間の中央値。
+     * <p>
+     * Sceneのレイアウトパルスの前後で計測するため、CSS・レイアウト・バインディングの評価を含み、
+     * レンダリングスレッドでの描画は含まない。
+     */
+    double getPulseTimeP50Millis();
+
+    double getPulseTimeP90Millis();
+
+    double getPulseTimeP99Millis();
+
+    double getPulseTimeMaxMillis();
+
+    long getMovedEventCount();
+
+    long getDraggedEventCount();
+
+    long getClickedEventCount();
+
+    /**
+     * 直近の1秒以上の区間における1秒あたりの{@link PointerEventType#MOVED}の数。
+     */
+    double getMovedEventsPerSecond();
+
+    double getDraggedEventsPerSecond();
+
+    double getClickedEventsPerSecond();
+
+    /**
+     * Sceneのrootの下にあるノードの数。
+     */
+    int getNodeCount();
+
+    int getClickPointCount();
+
+    /**
+     * 描画範囲を伸長した回数。
+     */
+    long getStretchCount();
+
+    double getStretchTimeTotalMillis();
+
+    double getStretchTimeP99Millis();
+
+    /**
+     * 描画範囲から出たクリックポイントを削除した回数。
+     */
+    long getClipCount();
+
+    double getClipTimeTotalMillis();
+
+    double getClipTimeP99Millis();
+
+    /**
+     * プロパティを読み込み・保存した回数。
+     */
+    long getPersistCount();
+
+    double getPersistLatencyP50Millis();
+
+    double getPersistLatencyMaxMillis();
+
+    /**
+     * すべての指標を初期化する。ノード数とクリックポイント数は初期化しない。
+     */
+    void reset();
+
+}
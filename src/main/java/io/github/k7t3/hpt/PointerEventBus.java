@@ -0,0 +1,260 @@
+package io.github.k7t3.hpt;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ポインタイベントをJavaFX Application Threadの外で受け取るためのバス。
+ * <p>
+ * {@link HoveringPointTrackerScene#addPointerListener(PointerListener)}に登録すると、受け取ったイベントを
+ * 購読者ごとの{@link PointerEventQueue}に格納する。購読者の{@link PointerListener}は購読者ごとのスレッドで呼び出されるため、
+ * 処理が遅くてもJavaFX Application Threadを待たせない。キューが満杯のときの扱いは{@link OverflowPolicy}で指定する。
+ * 購読者のスレッドはキューが空の間は停止しているため、イベントがなければCPUを使用しない。
+ */
+public class PointerEventBus implements PointerListener {
+
+    /**
+     * 購読者のキューが満杯のときの扱い。
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * 最も古いイベントを破棄して新しいイベントを格納する
+         */
+        DROP_OLDEST,
+
+        /**
+         * 新しいイベントを破棄する
+         */
+        DROP_NEWEST,
+
+        /**
+         * 空きができるまでイベントを発行したスレッドを待たせる。JavaFX Application Threadも待つため注意すること
+         */
+        BLOCK
+
+    }
+
+    /**
+     * 購読者ごとのキューの既定の容量
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 12;
+
+    private static final int DRAIN_BATCH_SIZE = 256;
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+
+    /**
+     * 購読の一覧。イベントごとに反復子を生成しないように、変更するたびに配列を作り直す
+     */
+    private volatile Subscription[] subscriptions = NO_SUBSCRIPTIONS;
+
+    /**
+     * 既定の容量で購読する。
+     * @param listener 購読者のスレッドで呼び出されるリスナ
+     * @param policy キューが満杯のときの扱い
+     * @return 購読。不要になったら{@link Subscription#close()}すること
+     */
+    public Subscription subscribe(PointerListener listener, OverflowPolicy policy) {
+        return subscribe(listener, policy, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * 購読する。
+     * @param listener 購読者のスレッドで呼び出されるリスナ
+     * @param policy キューが満杯のときの扱い
+     * @param capacity キューの容量。2のべき乗に切り上げられる
+     * @return 購読。不要になったら{@link Subscription#close()}すること
+     */
+    public Subscription subscribe(PointerListener listener, OverflowPolicy policy, int capacity) {
+        Subscription subscription = new Subscription(listener, policy, capacity);
+        synchronized (this) {
+            Subscription[] subscriptions = Arrays.copyOf(this.subscriptions, this.subscriptions.length + 1);
+            subscriptions[subscriptions.length - 1] = subscription;
+            this.subscriptions = subscriptions;
+        }
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * 購読している数。
+     */
+    public int getSubscriptionCount() {
+        return subscriptions.length;
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        Subscription[] subscriptions = this.subscriptions;
+        for (int i = 0; i < subscriptions.length; i++) {
+            if (subscriptions[i] == subscription) {
+                Subscription[] removed = new Subscription[subscriptions.length - 1];
+                System.arraycopy(subscriptions, 0, removed, 0, i);
+                System.arraycopy(subscriptions, i + 1, removed, i, removed.length - i);
+                this.subscriptions = removed;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void pointerChanged(PointerEventType type, long timestamp, double x, double y) {
+        Subscription[] subscriptions = this.subscriptions;
+        if (subscriptions.length == 0) {
+            return;
+        }
+
+        for (Subscription subscription : subscriptions) {
+            subscription.publish(type, timestamp, x, y);
+        }
+
+        // すべてのキューへの格納を公開するフェンスはイベントごとに一度だけ実行し、
+        // 停止を通知している購読者のスレッドだけを再開させる
+        VarHandle.fullFence();
+        for (Subscription subscription : subscriptions) {
+            subscription.queue.wakeUpWaiter();
+        }
+    }
+
+    /**
+     * すべての購読を終了し、残っているイベントを受け渡し終えるまで待つ。
+     * @param timeoutMillis 購読ごとに待機する最大時間
+     */
+    public void close(long timeoutMillis) {
+        for (Subscription subscription : subscriptions) {
+            subscription.close(timeoutMillis);
+        }
+    }
+
+    /**
+     * 一つの購読。キューとイベントを受け渡すスレッドは購読ごとに作成する。
+     */
+    public final class Subscription implements AutoCloseable {
+
+        private final PointerListener listener;
+
+        private final OverflowPolicy policy;
+
+        private final PointerEventQueue queue;
+
+        private final Thread thread;
+
+        private final LongAdder dropped = new LongAdder();
+
+        private volatile boolean running = true;
+
+        private Subscription(PointerListener listener, OverflowPolicy policy, int capacity) {
+            this.listener = listener;
+            this.policy = policy;
+            this.queue = new PointerEventQueue(capacity);
+            this.thread = new Thread(this::run, "hpt-pointer-bus-" + THREAD_NUMBER.incrementAndGet());
+            this.thread.setDaemon(true);
+        }
+
+        public OverflowPolicy getPolicy() {
+            return policy;
+        }
+
+        public boolean isActive() {
+            return running;
+        }
+
+        /**
+         * キューが満杯だったために破棄したイベントの数。
+         */
+        public long getDroppedCount() {
+            return dropped.sum();
+        }
+
+        private void publish(PointerEventType type, long timestamp, double x, double y) {
+            if (!running) {
+                return;
+            }
+
+            switch (policy) {
+                case DROP_OLDEST -> {
+                    if (!queue.offerOverwriting(type, timestamp, x, y)) {
+                        dropped.increment();
+                    }
+                }
+                case DROP_NEWEST -> {
+                    if (!queue.offer(type, timestamp, x, y)) {
+                        dropped.increment();
+                    }
+                }
+                case BLOCK -> {
+                    while (!queue.offer(type, timestamp, x, y)) {
+                        // 終了した購読のために待ち続けない
+                        if (!running) {
+                            dropped.increment();
+                            return;
+                        }
+                        LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                    }
+                }
+            }
+        }
+
+        private void run() {
+            while (true) {
+                int count = queue.drain(this::deliver, DRAIN_BATCH_SIZE);
+                if (0 < count) {
+                    continue;
+                }
+                if (!running && queue.isEmpty()) {
+                    break;
+                }
+                // イベントが格納されるか、購読を終了するまで待つ
+                queue.awaitNotEmpty();
+            }
+        }
+
+        private void deliver(PointerEventType type, long timestamp, double x, double y) {
+            try {
+
+                listener.pointerChanged(type, timestamp, x, y);
+
+            } catch (RuntimeException e) {
+
+                // 一つのイベントの失敗で購読を終了させない
+                e.printStackTrace();
+
+            }
+        }
+
+        /**
+         * 購読を終了する。キューに残っているイベントは購読者のスレッドで受け渡される。
+         */
+        @Override
+        public void close() {
+            running = false;
+            unsubscribe(this);
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * 購読を終了し、キューに残っているイベントを受け渡し終えるまで待つ。
+         * @param timeoutMillis 待機する最大時間
+         */
+        public void close(long timeoutMillis) {
+            close();
+            if (Thread.currentThread() == thread) {
+                return;
+            }
+            try {
+                thread.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
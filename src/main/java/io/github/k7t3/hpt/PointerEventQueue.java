@@ -0,0 +1,204 @@
+package io.github.k7t3.hpt;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ポインタイベントを受け渡す単一生産者・単一消費者のロックフリーなキュー。
+ * <p>
+ * イベントはプリミティブ配列のリングバッファに格納するため、受け渡しでオブジェクトは生成しない。
+ * {@link #offer}と{@link #offerOverwriting}は生産者スレッドから、{@link #drain}は消費者スレッドからのみ呼び出すこと。
+ * <p>
+ * 満杯のときに生産者が最も古いイベントを破棄できるように、消費者はイベントを読み出してから
+ * {@link #head}を比較交換で進める。交換に失敗したときは読み出したイベントは破棄されたものとして読み直す。
+ * <p>
+ * 消費者はキューが空の間{@link #awaitNotEmpty()}で停止できる。生産者はイベントを格納した後に{@link #signal()}を呼び出し、
+ * 停止している消費者を再開させる。複数のキューに格納するときは、フェンスを一度だけ実行してから各キューの{@link #wakeUpWaiter()}を呼び出せる。
+ */
+final class PointerEventQueue {
+
+    /**
+     * キューから取り出したイベントを受け取るコールバック。
+     */
+    @FunctionalInterface
+    interface Consumer {
+        void accept(PointerEventType type, long timestamp, double x, double y);
+    }
+
+    private static final PointerEventType[] TYPES = PointerEventType.values();
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final byte[] types;
+
+    private final long[] timestamps;
+
+    private final double[] xs;
+
+    private final double[] ys;
+
+    /**
+     * 次に取り出すシーケンス番号。消費者と、最も古いイベントを破棄するときの生産者が更新する。
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * 次に格納するシーケンス番号。生産者のみが更新する。
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * 生産者から見た{@link #head}のキャッシュ。
+     */
+    private long cachedHead = 0;
+
+    /**
+     * キューが空のため停止している消費者スレッド。停止していないときはnull
+     */
+    private volatile Thread waiter;
+
+    /**
+     * @param capacity 容量。2のべき乗に切り上げられる。
+     */
+    PointerEventQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.types = new byte[this.capacity];
+        this.timestamps = new long[this.capacity];
+        this.xs = new double[this.capacity];
+        this.ys = new double[this.capacity];
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * イベントを格納する。
+     * @return キューが満杯で格納できなかったときはfalse
+     */
+    boolean offer(PointerEventType type, long timestamp, double x, double y) {
+        long sequence = tail.get();
+        if (cachedHead + capacity <= sequence) {
+            cachedHead = head.getAcquire();
+            if (cachedHead + capacity <= sequence) {
+                return false;
+            }
+        }
+
+        int index = (int) sequence & mask;
+        types[index] = (byte) type.ordinal();
+        timestamps[index] = timestamp;
+        xs[index] = x;
+        ys[index] = y;
+        tail.setRelease(sequence + 1);
+        return true;
+    }
+
+    /**
+     * イベントを格納する。キューが満杯のときは最も古いイベントを破棄して格納する。
+     * @return 最も古いイベントを破棄したときはfalse
+     */
+    boolean offerOverwriting(PointerEventType type, long timestamp, double x, double y) {
+        long sequence = tail.get();
+        boolean overwritten = false;
+        while (true) {
+            long oldest = head.get();
+            if (sequence < oldest + capacity) {
+                break;
+            }
+            // 消費者が同時に取り出していれば交換に失敗するので空きを確認し直す
+            if (head.compareAndSet(oldest, oldest + 1)) {
+                overwritten = true;
+                break;
+            }
+        }
+        cachedHead = head.get();
+
+        int index = (int) sequence & mask;
+        types[index] = (byte) type.ordinal();
+        timestamps[index] = timestamp;
+        xs[index] = x;
+        ys[index] = y;
+        tail.setRelease(sequence + 1);
+        return !overwritten;
+    }
+
+    /**
+     * 格納されているイベントを最大{@code maxCount}件取り出す。
+     * @param consumer コールバック
+     * @param maxCount 取り出す最大件数
+     * @return 取り出した件数
+     */
+    int drain(Consumer consumer, int maxCount) {
+        int count = 0;
+        while (count < maxCount) {
+            long sequence = head.get();
+            if (tail.getAcquire() <= sequence) {
+                break;
+            }
+
+            int index = (int) sequence & mask;
+            PointerEventType type = TYPES[types[index]];
+            long timestamp = timestamps[index];
+            double x = xs[index];
+            double y = ys[index];
+
+            // 読み出している間に生産者が破棄して上書きしていたら読み直す
+            if (!head.compareAndSet(sequence, sequence + 1)) {
+                continue;
+            }
+
+            consumer.accept(type, timestamp, x, y);
+            count++;
+        }
+        return count;
+    }
+
+    boolean isEmpty() {
+        return tail.getAcquire() <= head.getAcquire();
+    }
+
+    /**
+     * キューが空の間、消費者スレッドを停止する。消費者スレッドからのみ呼び出すこと。
+     * <p>
+     * イベントが格納されるか、{@link LockSupport#unpark(Thread)}されると戻る。理由なく戻ることもあるため、
+     * 呼び出し元はループの中で状態を確認し直すこと。
+     */
+    void awaitNotEmpty() {
+        waiter = Thread.currentThread();
+        // waiterを公開してから空であることを確認するので、生産者の格納と行き違いにならない
+        VarHandle.fullFence();
+        if (isEmpty()) {
+            LockSupport.park(this);
+        }
+        waiter = null;
+    }
+
+    /**
+     * 停止している消費者スレッドを再開させる。生産者スレッドがイベントを格納した後に呼び出す。
+     */
+    void signal() {
+        // tailの格納がwaiterの読み出しより後に見えないようにする
+        VarHandle.fullFence();
+        wakeUpWaiter();
+    }
+
+    /**
+     * 消費者スレッドが停止を通知しているときだけ再開させる。
+     * 呼び出し元は格納した後に{@link VarHandle#fullFence()}を実行しておくこと。
+     */
+    void wakeUpWaiter() {
+        Thread waiter = this.waiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package io.github.k7t3.hpt;
+
+/**
+ * {@link PointerListener}に通知されるポインタイベントの種類。
+ */
+public enum PointerEventType {
+
+    /**
+     * マウスカーソルの移動
+     */
+    MOVED,
+
+    /**
+     * ドラッグによるマウスカーソルの移動
+     */
+    DRAGGED,
+
+    /**
+     * クリックポイントの追加
+     */
+    CLICKED
+
+}
@@ -0,0 +1,20 @@
+package io.github.k7t3.hpt;
+
+/**
+ * {@link HoveringPointTrackerScene}が受け取ったポインタイベントを間引かずに受け取るリスナ。
+ * <p>
+ * JavaFX Application Thread上で、マウスイベントごとに呼び出される。
+ */
+@FunctionalInterface
+public interface PointerListener {
+
+    /**
+     * ポインタイベントを受け取る。
+     * @param type イベントの種類
+     * @param timestamp イベントを受け取った時刻({@link System#nanoTime()})
+     * @param x 描画範囲内に収めたX座標
+     * @param y 描画範囲内に収めたY座標
+     */
+    void pointerChanged(PointerEventType type, long timestamp, double x, double y);
+
+}
@@ -0,0 +1,343 @@
+package io.github.k7t3.hpt;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * カーソル座標とクリックを接続しているクライアントに配信するローカルサーバ。
+ * <p>
+ * {@link #DEFAULT_SOCKET_PATH}のUnixドメインソケットで待ち受け、使用できない環境ではループバックアドレスの
+ * {@link #DEFAULT_PORT}で待ち受ける。接続すると現在のカーソル座標を一行送り、以降は{@link PointerEventBus}から
+ * 受け取ったイベントを一行ずつ送る。各行は次のようなJSONである。
+ * <pre>
+ * {"type":"MOVED","timestamp":123456789,"x":100.0,"y":200.0}
+ * </pre>
+ * 最初の行の{@code type}は{@code POSITION}、{@code timestamp}は接続した時刻。timestampは{@link System#nanoTime()}の値。
+ * <p>
+ * クライアントごとに{@link PointerEventBus.OverflowPolicy#DROP_OLDEST}で購読し、購読のスレッドで送信する。
+ * 受信が遅いクライアントには古いイベントを破棄して最新の座標を送るため、描画範囲の処理や他のクライアントを待たせない。
+ */
+public class PointerStreamServer {
+
+    /**
+     * Unixドメインソケットの既定のパス
+     */
+    public static final Path DEFAULT_SOCKET_PATH = PropertyManager.DATA_DIRECTORY.resolve("hpt.sock");
+
+    /**
+     * Unixドメインソケットを使用できないときに待ち受ける既定のポート
+     */
+    public static final int DEFAULT_PORT = 52170;
+
+    private static final int CLIENT_QUEUE_CAPACITY = 1024;
+
+    private final PointerEventBus bus;
+
+    private final SceneProperties properties;
+
+    private final Path socketPath;
+
+    private final int port;
+
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+
+    private volatile ServerSocketChannel server;
+
+    private volatile SocketAddress address;
+
+    public PointerStreamServer(PointerEventBus bus, SceneProperties properties) {
+        this(bus, properties, DEFAULT_SOCKET_PATH, DEFAULT_PORT);
+    }
+
+    /**
+     * @param bus イベントを受け取るバス
+     * @param properties 接続したときに送る座標を読み出すプロパティ
+     * @param socketPath Unixドメインソケットのパス
+     * @param port Unixドメインソケットを使用できないときに待ち受けるポート。0のときは空いているポート
+     */
+    public PointerStreamServer(PointerEventBus bus, SceneProperties properties, Path socketPath, int port) {
+        this.bus = bus;
+        this.properties = properties;
+        this.socketPath = socketPath;
+        this.port = port;
+    }
+
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * 待ち受けているアドレス。停止しているときはnull。
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * 接続しているクライアントの数。
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * 待ち受けを開始する。
+     * @throws IOException Unixドメインソケットとループバックアドレスのどちらでも待ち受けられなかったとき
+     */
+    public synchronized void start() throws IOException {
+        if (isRunning()) {
+            return;
+        }
+
+        ServerSocketChannel channel = openUnixDomain();
+        if (channel == null) {
+            channel = ServerSocketChannel.open();
+            try {
+                channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        ServerSocketChannel opened = channel;
+        server = opened;
+        address = opened.getLocalAddress();
+
+        Thread thread = new Thread(() -> accept(opened), "hpt-pointer-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Unixドメインソケットで待ち受ける。
+     * @return Unixドメインソケットを使用できないときはnull
+     * @throws IOException 他のインスタンスがすでに待ち受けているとき
+     */
+    private ServerSocketChannel openUnixDomain() throws IOException {
+        ServerSocketChannel channel;
+        try {
+            channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } catch (UnsupportedOperationException e) {
+            // 使用できない環境ではループバックアドレスで待ち受ける
+            return null;
+        }
+
+        try {
+            deleteStaleSocket();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        try {
+
+            Files.createDirectories(socketPath.toAbsolutePath().getParent());
+            channel.bind(UnixDomainSocketAddress.of(socketPath));
+            return channel;
+
+        } catch (IOException e) {
+
+            // パスが長すぎるなどで待ち受けられないときはループバックアドレスで待ち受ける
+            e.printStackTrace();
+            channel.close();
+            return null;
+
+        }
+    }
+
+    /**
+     * 前回異常終了したときに残ったソケットファイルを削除する。
+     * @throws IOException 他のインスタンスが待ち受けているとき、またはソケット以外のファイルがあるとき
+     */
+    private void deleteStaleSocket() throws IOException {
+        if (!Files.exists(socketPath, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        if (!Files.readAttributes(socketPath, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther()) {
+            throw new FileAlreadyExistsException(socketPath.toString(), null, "not a socket");
+        }
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+        } catch (ConnectException e) {
+            // 接続を拒否されたときは待ち受けているプロセスがいない
+            Files.deleteIfExists(socketPath);
+            return;
+        }
+
+        channel.close();
+        throw new IOException("another instance is listening on " + socketPath);
+    }
+
+    /**
+     * 待ち受けを停止し、すべてのクライアントを切断する。
+     */
+    public synchronized void stop() {
+        ServerSocketChannel channel = server;
+        if (channel == null) {
+            return;
+        }
+        server = null;
+        address = null;
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        for (Client client : clients) {
+            client.close();
+        }
+
+        try {
+            Files.deleteIfExists(socketPath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void accept(ServerSocketChannel channel) {
+        while (channel.isOpen()) {
+            try {
+
+                SocketChannel socket = channel.accept();
+                Client client = new Client(socket);
+                clients.add(client);
+                client.start();
+
+                // 停止と同時に接続されたときは取り残さない
+                if (server != channel) {
+                    client.close();
+                }
+
+            } catch (ClosedChannelException e) {
+
+                // 停止した
+                return;
+
+            } catch (IOException e) {
+
+                e.printStackTrace();
+
+            }
+        }
+    }
+
+    /**
+     * 接続している一つのクライアント。送信は購読のスレッドで行う。
+     */
+    private class Client implements PointerListener {
+
+        private final SocketChannel socket;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private volatile PointerEventBus.Subscription subscription;
+
+        // 以下は送信するスレッドからのみ操作する
+
+        private final StringBuilder line = new StringBuilder(128);
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        Client(SocketChannel socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * 現在のカーソル座標を送ってから購読を開始する。
+         */
+        void start() {
+            try {
+
+                SceneSnapshot snapshot = properties.getSnapshot();
+                send("POSITION", System.nanoTime(), snapshot.currentX(), snapshot.currentY());
+
+            } catch (IOException e) {
+
+                close();
+                return;
+
+            }
+
+            subscription = bus.subscribe(this, PointerEventBus.OverflowPolicy.DROP_OLDEST, CLIENT_QUEUE_CAPACITY);
+
+            // 購読する前に閉じられていたら購読を終了する
+            if (closed.get()) {
+                subscription.close();
+            }
+        }
+
+        @Override
+        public void pointerChanged(PointerEventType type, long timestamp, double x, double y) {
+            try {
+
+                send(type.name(), timestamp, x, y);
+
+            } catch (IOException e) {
+
+                // 切断された
+                close();
+
+            }
+        }
+
+        private void send(String type, long timestamp, double x, double y) throws IOException {
+            line.setLength(0);
+            line.append("{\"type\":\"").append(type)
+                    .append("\",\"timestamp\":").append(timestamp)
+                    .append(",\"x\":").append(x)
+                    .append(",\"y\":").append(y)
+                    .append("}\n");
+
+            // すべてASCII文字なのでそのままバイトにする
+            buffer.clear();
+            for (int i = 0; i < line.length(); i++) {
+                buffer.put((byte) line.charAt(i));
+            }
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+                socket.write(buffer);
+            }
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            clients.remove(this);
+
+            PointerEventBus.Subscription subscription = this.subscription;
+            if (subscription != null) {
+                subscription.close();
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+}
@@ -1,11 +1,13 @@
 package io.github.k7t3.hpt;
 
+import javafx.collections.ObservableList;
 import javafx.scene.paint.Color;
 import javafx.stage.Screen;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.Optional;
 import java.util.Properties;
 
 /**
@@ -13,7 +15,18 @@ import java.util.Properties;
  */
 class PropertyManager {
 
+    /**
+     * 以前のバージョンで保存していた{@link Screen#hashCode()}。読み込みのみ対応する。
+     */
     public static final String PROPERTY_DISPLAY = "display";
+    /**
+     * 選択したディスプレイの{@link ScreenFingerprint}
+     */
+    public static final String PROPERTY_SCREEN = "screen";
+    /**
+     * 保存したときのディスプレイ構成の{@link ScreenFingerprint}
+     */
+    public static final String PROPERTY_SCREEN_LAYOUT = "screenLayout";
     public static final String PROPERTY_MIN_X = "minX";
     public static final String PROPERTY_MIN_Y = "minY";
     public static final String PROPERTY_WIDTH = "width";
@@ -28,30 +41,70 @@ class PropertyManager {
 
     private final SceneProperties properties;
 
+    private final Path path;
+
     private final boolean isSupported;
 
+    /**
+     * 直近の{@link #load()}で前回のディスプレイとディスプレイ構成をそのまま復元できたか
+     */
+    private boolean sessionRestorable = false;
+
     public PropertyManager() {
         this(new SceneProperties());
     }
 
     public PropertyManager(SceneProperties properties) {
         this.properties = properties;
+        this.path = PROPERTY_FILE_PATH;
         isSupported = System.getProperty("os.name").toLowerCase().startsWith("win");
     }
 
+    /**
+     * 保存先を指定して生成する。保存先を指定した場合はOSに関係なく利用できる。
+     * @param properties プロパティ
+     * @param path プロパティファイルのパス
+     */
+    PropertyManager(SceneProperties properties, Path path) {
+        this.properties = properties;
+        this.path = path;
+        isSupported = true;
+    }
+
     public SceneProperties getProperties() {
         return properties;
     }
 
     /**
-     * プロパティファイルのパス。Windowsのみサポート。
+     * アプリケーションのデータを保存するディレクトリ。
      */
-    public static final Path PROPERTY_FILE_PATH = Paths.get(
+    public static final Path DATA_DIRECTORY = Paths.get(
             System.getProperty("user.home"),
             "AppData",
             "Local",
-            "io.github.k7t3.hpt",
-            "properties.xml");
+            "io.github.k7t3.hpt");
+
+    /**
+     * プロパティファイルのパス。Windowsのみサポート。
+     */
+    public static final Path PROPERTY_FILE_PATH = DATA_DIRECTORY.resolve("properties.xml");
+
+    /**
+     * 直近の{@link #load()}で、保存したときとディスプレイ構成が同じで、選択していたディスプレイも復元できたか。
+     * <p>
+     * trueのときは設定画面を経由せずに前回と同じ位置に描画範囲を表示できる。
+     */
+    public boolean isSessionRestorable() {
+        return sessionRestorable;
+    }
+
+    public boolean isSupported() {
+        return isSupported;
+    }
+
+    public Path getPath() {
+        return path;
+    }
 
     public void save() {
         if (!isSupported) {
@@ -59,11 +112,28 @@ class PropertyManager {
             return;
         }
 
-        Properties p = new Properties();
+        try {
+
+            write(snapshot());
+
+        } catch (IOException e) {
+
+            e.printStackTrace();
+
+        }
+    }
 
-        int screenHashCode = properties.getScreen() != null ? properties.getScreen().hashCode() : -1;
+    /**
+     * 現在のプロパティを保存する形式に変換する。JavaFX Application Threadから呼び出すこと。
+     * @return 保存するプロパティ
+     */
+    Properties snapshot() {
+        Properties p = new Properties();
 
-        p.setProperty(PROPERTY_DISPLAY, String.valueOf(screenHashCode));
+        // ディスプレイが選択されていないときはディスプレイの一覧を取得しない
+        Screen screen = properties.getScreen();
+        p.setProperty(PROPERTY_SCREEN, screen != null ? ScreenFingerprint.of(screen) : "");
+        p.setProperty(PROPERTY_SCREEN_LAYOUT, screen != null ? ScreenFingerprint.layoutOf(Screen.getScreens()) : "");
         p.setProperty(PROPERTY_MIN_X, String.valueOf(properties.getMinX()));
         p.setProperty(PROPERTY_MIN_Y, String.valueOf(properties.getMinY()));
         p.setProperty(PROPERTY_WIDTH, String.valueOf(properties.getWidth()));
@@ -76,29 +146,36 @@ class PropertyManager {
         p.setProperty(PROPERTY_CLICK_POINT_COLOR, properties.getClickPointColor().toString());
         p.setProperty(PROPERTY_SCENE_BORDER_COLOR, properties.getSceneBorderColor().toString());
 
-        if (!Files.exists(PROPERTY_FILE_PATH.getParent())) {
-
-            try {
-
-                Files.createDirectories(PROPERTY_FILE_PATH.getParent());
+        return p;
+    }
 
-            } catch (IOException e) {
+    /**
+     * プロパティをファイルに書き込む。任意のスレッドから呼び出せる。
+     * <p>
+     * 同じディレクトリの一時ファイルに書き込んでから置き換えるため、書き込みの途中で終了しても
+     * 以前のファイルが壊れることはない。
+     * @param p 保存するプロパティ
+     * @throws IOException 書き込みに失敗したとき
+     */
+    void write(Properties p) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
 
-                e.printStackTrace();
-                return;
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
 
+            try (OutputStream stream = Files.newOutputStream(temp)) {
+                p.storeToXML(stream, "", StandardCharsets.UTF_8);
             }
 
-        }
-
-        try (OutputStream stream = Files.newOutputStream(PROPERTY_FILE_PATH)) {
-
-            p.storeToXML(stream, "", StandardCharsets.UTF_8);
-
-        } catch (IOException e) {
-
-            e.printStackTrace();
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
 
+        } finally {
+            Files.deleteIfExists(temp);
         }
     }
 
@@ -108,17 +185,19 @@ class PropertyManager {
             return;
         }
 
-        if (!Files.exists(PROPERTY_FILE_PATH)) {
+        if (!Files.exists(path)) {
             return;
         }
 
         Properties p = new Properties();
 
-        try (InputStream stream = Files.newInputStream(PROPERTY_FILE_PATH)) {
+        try (InputStream stream = Files.newInputStream(path)) {
 
             p.loadFromXML(stream);
 
-            int displayHashCode = Integer.parseInt(p.getProperty(PROPERTY_DISPLAY));
+            String screenFingerprint = p.getProperty(PROPERTY_SCREEN, "");
+            String screenLayout = p.getProperty(PROPERTY_SCREEN_LAYOUT, "");
+            int displayHashCode = Integer.parseInt(p.getProperty(PROPERTY_DISPLAY, "-1"));
             double minX = Double.parseDouble(p.getProperty(PROPERTY_MIN_X));
             double minY = Double.parseDouble(p.getProperty(PROPERTY_MIN_Y));
             double width = Double.parseDouble(p.getProperty(PROPERTY_WIDTH));
@@ -131,14 +210,20 @@ class PropertyManager {
             Color clickPointColor = Color.valueOf(p.getProperty(PROPERTY_CLICK_POINT_COLOR));
             Color sceneBorderColor = Color.valueOf(p.getProperty(PROPERTY_SCENE_BORDER_COLOR));
 
-            Screen.getScreens().stream()
-                    .filter(s -> s.hashCode() == displayHashCode)
-                    .findFirst()
-                    .ifPresent(properties::setScreen);
-            properties.setMinX(minX);
-            properties.setMinY(minY);
-            properties.setWidth(width);
-            properties.setHeight(height);
+            // ディスプレイが保存されていない場合はディスプレイの一覧を取得しない
+            sessionRestorable = false;
+            if (!screenFingerprint.isEmpty()) {
+                ObservableList<Screen> screens = Screen.getScreens();
+                Optional<Screen> screen = ScreenFingerprint.find(screens, screenFingerprint);
+                screen.ifPresent(properties::setScreen);
+                sessionRestorable = screen.isPresent() && screenLayout.equals(ScreenFingerprint.layoutOf(screens));
+            } else if (displayHashCode != -1) {
+                Screen.getScreens().stream()
+                        .filter(s -> s.hashCode() == displayHashCode)
+                        .findFirst()
+                        .ifPresent(properties::setScreen);
+            }
+            properties.setGeometry(minX, minY, width, height);
             properties.setEdgeWidth(edgeWidth);
             properties.setPaintColor(paintColor);
             properties.setGridColor(gridColor);
@@ -1,7 +1,10 @@
 package io.github.k7t3.hpt;
 
+import javafx.beans.value.ChangeListener;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.collections.WeakListChangeListener;
 import javafx.event.ActionEvent;
 import javafx.fxml.*;
 import javafx.geometry.Rectangle2D;
@@ -9,14 +12,17 @@ import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.layout.Pane;
+import javafx.stage.Modality;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
 import javafx.util.StringConverter;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
-import java.util.function.Consumer;
 
 @SuppressWarnings("ConstantConditions")
 public class PropertyViewController extends Stage implements Initializable {
@@ -54,6 +60,9 @@ public class PropertyViewController extends Stage implements Initializable {
     @FXML
     private Spinner<Double> hSpinner;
 
+    @FXML
+    private CheckBox livePreview;
+
     private record SelectableScreen(Screen screen, int screenNumber) { }
 
     private final SceneProperties properties;
@@ -110,21 +119,79 @@ public class PropertyViewController extends Stage implements Initializable {
         });
 
         // コンボボックスに表示するディスプレイの設定
-        int number = 1;
-        ObservableList<SelectableScreen> screens = FXCollections.observableArrayList();
-        for (Screen screen : Screen.getScreens()) {
-            screens.add(new SelectableScreen(screen, number++));
-        }
+        ObservableList<SelectableScreen> screens = createSelectableScreens();
         displayComboBox.setItems(screens);
 
+        // ディスプレイの構成が変わったときはプレビューを作り直す
+        Screen.getScreens().addListener(new WeakListChangeListener<>(screensListener));
+
+        // ディスプレイを変更したらスピナの値を変更する。
+        displayComboBox.getSelectionModel().selectedItemProperty().addListener((ob, o, n) -> {
+            if (n != null) {
+                setSpinnerProperties(n.screen);
+            }
+        });
+
+        // 変更を反映する設定のときは値を変更するたびに反映を要求する。
+        ChangeListener<Object> previewListener = (ob, o, n) -> requestLivePreview();
+        displayComboBox.valueProperty().addListener(previewListener);
+        for (Spinner<Double> spinner : List.of(xSpinner, ySpinner, wSpinner, hSpinner)) {
+            spinner.valueProperty().addListener(previewListener);
+        }
+        for (ColorPicker picker : List.of(paintColor, gridColor, edgeColor, labelColor, clickPointColor)) {
+            picker.valueProperty().addListener(previewListener);
+        }
+        livePreview.selectedProperty().addListener((ob, o, n) -> {
+            if (n) {
+                requestLivePreview();
+            } else {
+                rollback();
+            }
+        });
+
+        // この画面を閉じたときにプレビューが表示されていたら同時に隠す。
+        // キャンセルしたときは反映していた変更を元に戻す。
+        showingProperty().addListener((ob, o, n) -> {
+            if (o && !n) {
+                hidePreviewStage();
+                if (isCancelled) {
+                    rollback();
+                }
+            }
+        });
+
+        getIcons().add(new Image(getClass().getResource("/icon/icon.png").toExternalForm()));
+
+        Scene scene = new Scene(root);
+        setScene(scene);
+
+        // 使い回すためどこから開いても同じ扱いになるようにする
+        initModality(Modality.APPLICATION_MODAL);
+    }
+
+    /**
+     * {@link SceneProperties}の現在の値を画面に反映する。
+     * <p>
+     * この画面は一度だけ生成して使い回すため、表示する前に毎回呼び出す。
+     */
+    public void refresh() {
+        isCancelled = true;
+
+        // キャンセルしたときに戻す値
+        livePreviewTask.cancel();
+        backup = properties.clone();
+
+        ObservableList<SelectableScreen> screens = displayComboBox.getItems();
+
         // 初期表示するスクリーン
         SelectableScreen screen;
 
         if (properties.getScreen() != null) {
 
             // プロパティで指定されていた場合
+            String fingerprint = ScreenFingerprint.of(properties.getScreen());
             screen = screens.stream()
-                    .filter(s -> s.screen.hashCode() == properties.getScreen().hashCode())
+                    .filter(s -> ScreenFingerprint.of(s.screen).equals(fingerprint))
                     .findFirst()
                     .orElse(screens.get(0));
 
@@ -135,65 +202,19 @@ public class PropertyViewController extends Stage implements Initializable {
 
         }
 
-        // 初期選択項目
-        displayComboBox.getSelectionModel().select(screen);
-        showPreviewStage(screen);
+        // 初期選択項目。選択が変わったときはリスナがプレビューを表示する
+        if (displayComboBox.getSelectionModel().getSelectedItem() == screen) {
+            showPreviewStage(screen);
+        } else {
+            displayComboBox.getSelectionModel().select(screen);
+        }
         setSpinnerProperties(screen.screen);
 
-        // ディスプレイを変更したらスピナの値を変更する。
-        displayComboBox.getSelectionModel().selectedItemProperty().addListener((ob, o, n) -> {
-            if (n != null) {
-                setSpinnerProperties(n.screen);
-            }
-        });
-
-        Consumer<Spinner<Double>> assignStringConverter = (spinner) -> {
-            spinner.getValueFactory().setConverter(new StringConverter<>() {
-                @Override
-                public String toString(Double object) {
-                    return String.format("%.0f", object);
-                }
-
-                @Override
-                public Double fromString(String string) {
-                    try {
-
-                        return Double.parseDouble(string);
-
-                    } catch (Exception e) {
-
-                        // Double型にパースできないときは元に戻す
-                        spinner.getEditor().setText(toString(spinner.getValue()));
-                        return spinner.getValue();
-                    }
-
-                }
-            });
-        };
-        assignStringConverter.accept(xSpinner);
-        assignStringConverter.accept(ySpinner);
-        assignStringConverter.accept(wSpinner);
-        assignStringConverter.accept(hSpinner);
-
         paintColor.setValue(properties.getPaintColor());
         gridColor.setValue(properties.getGridColor());
         edgeColor.setValue(properties.getEdgeColor());
         labelColor.setValue(properties.getLabelColor());
         clickPointColor.setValue(properties.getClickPointColor());
-
-        // この画面を閉じたときにプレビューが表示されていたら同時に閉じる。
-        showingProperty().addListener((ob, o, n) -> {
-            if (o && !n) {
-                if (stage != null) {
-                    stage.close();
-                }
-            }
-        });
-
-        getIcons().add(new Image(getClass().getResource("/icon/icon.png").toExternalForm()));
-
-        Scene scene = new Scene(root);
-        setScene(scene);
     }
 
     /**
@@ -224,6 +245,35 @@ public class PropertyViewController extends Stage implements Initializable {
                 screenBounds.getMaxY(),
                 Math.max(properties.getEdgeWidth() * 4, Math.min(properties.getHeight(), screenBounds.getMaxY()))
         ));
+
+        assignStringConverter(xSpinner);
+        assignStringConverter(ySpinner);
+        assignStringConverter(wSpinner);
+        assignStringConverter(hSpinner);
+    }
+
+    private static void assignStringConverter(Spinner<Double> spinner) {
+        spinner.getValueFactory().setConverter(new StringConverter<>() {
+            @Override
+            public String toString(Double object) {
+                return String.format("%.0f", object);
+            }
+
+            @Override
+            public Double fromString(String string) {
+                try {
+
+                    return Double.parseDouble(string);
+
+                } catch (Exception e) {
+
+                    // Double型にパースできないときは元に戻す
+                    spinner.getEditor().setText(toString(spinner.getValue()));
+                    return spinner.getValue();
+                }
+
+            }
+        });
     }
 
     private static final String SCREEN_FORMAT = "%s %d (%4.0f x %4.0f)";
@@ -232,43 +282,124 @@ public class PropertyViewController extends Stage implements Initializable {
         return String.format(SCREEN_FORMAT, "ディスプレイ", number, width, height);
     }
 
+    private static ObservableList<SelectableScreen> createSelectableScreens() {
+        int number = 1;
+        ObservableList<SelectableScreen> screens = FXCollections.observableArrayList();
+        for (Screen screen : Screen.getScreens()) {
+            screens.add(new SelectableScreen(screen, number++));
+        }
+        return screens;
+    }
+
     /**
-     * 選択しているディスプレイを表す透過Stage
+     * ディスプレイごとのプレビュー。初めて選択されたときに生成し、以降は表示・非表示を切り替えて再利用する
      */
-    private Stage stage;
+    private final Map<Screen, ScreenSelectionStage> previewStages = new HashMap<>();
+
+    /**
+     * 表示中のプレビュー
+     */
+    private ScreenSelectionStage previewStage;
+
+    private final ListChangeListener<Screen> screensListener = c -> invalidatePreviewStages();
 
     /**
      * 選択しているディスプレイを判別するための透過Stageを表示する。
      * @param screen 選択したディスプレイ
      */
     private void showPreviewStage(SelectableScreen screen) {
-        if (stage != null) {
-            stage.close();
-        }
+        hidePreviewStage();
         if (screen == null) {
             return;
         }
 
-        stage = new ScreenSelectionStage(screen.screen, screen.screenNumber);
-        stage.initOwner(this);
-        stage.show();
+        previewStage = previewStages.computeIfAbsent(screen.screen, s -> {
+            ScreenSelectionStage stage = new ScreenSelectionStage(s, screen.screenNumber);
+            stage.initOwner(this);
+            return stage;
+        });
+        previewStage.show();
         toFront();
     }
 
-    @FXML
-    private void enter(ActionEvent e) {
-        e.consume();
-        isCancelled = false;
-        properties.setScreen(displayComboBox.getValue().screen());
+    private void hidePreviewStage() {
+        if (previewStage != null) {
+            previewStage.hide();
+            previewStage = null;
+        }
+    }
+
+    /**
+     * ディスプレイの構成が変わったときに、キャッシュしているプレビューを破棄してディスプレイの一覧を作り直す。
+     */
+    private void invalidatePreviewStages() {
+        hidePreviewStage();
+        previewStages.values().forEach(Stage::close);
+        previewStages.clear();
+
+        SelectableScreen selected = displayComboBox.getValue();
+        String fingerprint = selected != null ? ScreenFingerprint.of(selected.screen) : null;
+
+        ObservableList<SelectableScreen> screens = createSelectableScreens();
+        displayComboBox.setItems(screens);
+
+        // 同じディスプレイが残っていれば選択し直す
+        SelectableScreen screen = screens.stream()
+                .filter(s -> ScreenFingerprint.of(s.screen).equals(fingerprint))
+                .findFirst()
+                .orElse(screens.isEmpty() ? null : screens.get(0));
+        displayComboBox.getSelectionModel().select(screen);
+    }
+
+    /**
+     * 表示する前の値。キャンセルしたときにこの値へ戻す
+     */
+    private SceneProperties backup;
+
+    /**
+     * 変更を反映する処理。スピナの長押しなどで値が連続して変わっても、反映はパルスごとに最新の値で一度だけ行う
+     */
+    private final PulseCoalescedTask livePreviewTask = new PulseCoalescedTask(this::apply);
+
+    private void requestLivePreview() {
+        if (isShowing() && livePreview.isSelected()) {
+            livePreviewTask.request();
+        }
+    }
+
+    /**
+     * 反映していた変更を表示する前の値に戻す。
+     */
+    private void rollback() {
+        livePreviewTask.cancel();
+        if (backup != null) {
+            properties.restore(backup);
+        }
+    }
+
+    /**
+     * 画面の値をプロパティに反映する。
+     */
+    private void apply() {
+        SelectableScreen screen = displayComboBox.getValue();
+        if (screen == null) {
+            return;
+        }
+        properties.setScreen(screen.screen());
         properties.setPaintColor(paintColor.getValue());
         properties.setGridColor(gridColor.getValue());
         properties.setEdgeColor(edgeColor.getValue());
         properties.setLabelColor(labelColor.getValue());
         properties.setClickPointColor(clickPointColor.getValue());
-        properties.setMinX(xSpinner.getValue());
-        properties.setMinY(ySpinner.getValue());
-        properties.setWidth(wSpinner.getValue());
-        properties.setHeight(hSpinner.getValue());
+        properties.setGeometry(xSpinner.getValue(), ySpinner.getValue(), wSpinner.getValue(), hSpinner.getValue());
+    }
+
+    @FXML
+    private void enter(ActionEvent e) {
+        e.consume();
+        isCancelled = false;
+        livePreviewTask.cancel();
+        apply();
         close();
     }
 
@@ -0,0 +1,62 @@
+package io.github.k7t3.hpt;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * 要求された処理をJavaFXのパルスごとに最大一度だけ実行するタスク。
+ * <p>
+ * 1パルスの間に何度要求されても処理は次のパルスで一度だけ実行される。
+ * 要求がないときはタイマを停止するため、アイドル時にパルスを発生させない。
+ * JavaFX Application Threadからのみ操作されることを前提とする。
+ */
+class PulseCoalescedTask {
+
+    private final Runnable task;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            requested = false;
+            task.run();
+        }
+    };
+
+    private boolean requested = false;
+
+    PulseCoalescedTask(Runnable task) {
+        this.task = task;
+    }
+
+    /**
+     * 次のパルスで処理を実行するように要求する。
+     */
+    void request() {
+        if (requested) {
+            return;
+        }
+        requested = true;
+        timer.start();
+    }
+
+    /**
+     * 要求されている処理があれば、パルスを待たずに即座に実行する。
+     */
+    void flush() {
+        if (!requested) {
+            return;
+        }
+        timer.stop();
+        requested = false;
+        task.run();
+    }
+
+    /**
+     * 要求されている処理を取り消す。
+     */
+    void cancel() {
+        timer.stop();
+        requested = false;
+    }
+
+}
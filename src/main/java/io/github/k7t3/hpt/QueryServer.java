@@ -0,0 +1,410 @@
+package io.github.k7t3.hpt;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import javafx.geometry.Rectangle2D;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 描画範囲、クリックポイント、カーソルの軌跡をJSONで返すローカルのHTTPサーバ。
+ * <p>
+ * ループバックアドレスの{@link #DEFAULT_PORT}で待ち受け、次のGETリクエストに応答する。
+ * <dl>
+ *     <dt>{@code /geometry}</dt>
+ *     <dd>描画範囲とカーソル座標。{@link SceneSnapshot}から返す</dd>
+ *     <dt>{@code /clickpoints?minX=&minY=&width=&height=}</dt>
+ *     <dd>矩形に含まれるクリックポイント。矩形を省略したときはすべて。{@link ClickPointSnapshot}から返す</dd>
+ *     <dt>{@code /trajectory?from=&since=&limit=}</dt>
+ *     <dd>シーケンス番号{@code from}、または時刻{@code since}({@link System#nanoTime()})以降の軌跡を最大{@code limit}件。
+ *     続きは応答の{@code next}を{@code from}に指定して取得する</dd>
+ * </dl>
+ * どの応答も不変のスナップショットかロックなしで読み出せる{@link TrajectoryRecorder}から作り、JavaFX Application Threadには触れない。
+ * 応答は件数に関わらず文字列に組み立てず、チャンク形式で書き出しながら送る。
+ */
+public class QueryServer {
+
+    /**
+     * 既定のポート
+     */
+    public static final int DEFAULT_PORT = 52171;
+
+    /**
+     * 軌跡を一度に返す既定の件数
+     */
+    static final int DEFAULT_TRAJECTORY_LIMIT = 1000;
+
+    /**
+     * 軌跡を一度に返す最大の件数
+     */
+    static final int MAX_TRAJECTORY_LIMIT = 100_000;
+
+    private static final int THREADS = 4;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final SceneProperties properties;
+
+    private final Supplier<ClickPointSnapshot> clickPoints;
+
+    private final TrajectoryRecorder trajectoryRecorder;
+
+    private final int port;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    public QueryServer(SceneProperties properties, Supplier<ClickPointSnapshot> clickPoints,
+                       TrajectoryRecorder trajectoryRecorder) {
+        this(properties, clickPoints, trajectoryRecorder, DEFAULT_PORT);
+    }
+
+    /**
+     * @param properties 描画範囲を読み出すプロパティ
+     * @param clickPoints 直近のクリックポイントを返す関数
+     * @param trajectoryRecorder 軌跡のレコーダ
+     * @param port 待ち受けるポート。0のときは空いているポート
+     */
+    public QueryServer(SceneProperties properties, Supplier<ClickPointSnapshot> clickPoints,
+                       TrajectoryRecorder trajectoryRecorder, int port) {
+        this.properties = properties;
+        this.clickPoints = clickPoints;
+        this.trajectoryRecorder = trajectoryRecorder;
+        this.port = port;
+    }
+
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * 待ち受けているアドレス。停止しているときはnull。
+     */
+    public synchronized InetSocketAddress getAddress() {
+        return server != null ? server.getAddress() : null;
+    }
+
+    /**
+     * 待ち受けを開始する。
+     * @throws IOException 待ち受けられなかったとき
+     */
+    public synchronized void start() throws IOException {
+        if (isRunning()) {
+            return;
+        }
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/geometry", get(this::geometry));
+        server.createContext("/clickpoints", get(this::clickPoints));
+        server.createContext("/trajectory", get(this::trajectory));
+
+        executor = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread thread = new Thread(r, "hpt-query-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+        this.server = server;
+    }
+
+    /**
+     * 待ち受けを停止する。
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        server = null;
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
+    /**
+     * JSONの本文を書き出すハンドラ。
+     */
+    @FunctionalInterface
+    private interface JsonHandler {
+        void write(Map<String, String> parameters, Writer writer) throws IOException;
+    }
+
+    /**
+     * GETリクエストのみを受け付け、パラメータを検証してからJSONを書き出すハンドラにする。
+     */
+    private static HttpHandler get(JsonHandler handler) {
+        return exchange -> {
+            try (exchange) {
+
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "GET");
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+
+                Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+
+                // 本文を書き出す前にパラメータの誤りを検出できるように、ハンドラは書き込みを遅延させたWriterで呼び出す
+                DeferredWriter writer = new DeferredWriter(exchange);
+                try {
+
+                    handler.write(parameters, writer);
+
+                } catch (IllegalArgumentException e) {
+
+                    if (writer.isStarted()) {
+                        throw e;
+                    }
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+
+                }
+                writer.close();
+
+            } catch (UncheckedIOException e) {
+
+                // クライアントが切断した
+                throw e.getCause();
+
+            }
+        };
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * 最初に書き込まれたときに応答ヘッダを送り、以降はチャンク形式で書き出すWriter。
+     */
+    private static final class DeferredWriter extends Writer {
+
+        private final HttpExchange exchange;
+
+        private Writer delegate;
+
+        DeferredWriter(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        boolean isStarted() {
+            return delegate != null;
+        }
+
+        private Writer delegate() throws IOException {
+            if (delegate == null) {
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(200, 0);
+                delegate = new BufferedWriter(
+                        new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), BUFFER_SIZE);
+            }
+            return delegate;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            delegate().write(buffer, offset, length);
+        }
+
+        @Override
+        public void write(String string) throws IOException {
+            delegate().write(string);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate().flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate().close();
+        }
+    }
+
+    private void geometry(Map<String, String> parameters, Writer writer) throws IOException {
+        SceneSnapshot snapshot = properties.getSnapshot();
+
+        writer.write("{\"version\":");
+        writer.write(Long.toString(snapshot.version()));
+        writer.write(",\"minX\":");
+        writer.write(Double.toString(snapshot.minX()));
+        writer.write(",\"minY\":");
+        writer.write(Double.toString(snapshot.minY()));
+        writer.write(",\"width\":");
+        writer.write(Double.toString(snapshot.width()));
+        writer.write(",\"height\":");
+        writer.write(Double.toString(snapshot.height()));
+        writer.write(",\"edgeWidth\":");
+        writer.write(Double.toString(snapshot.edgeWidth()));
+        writer.write(",\"currentX\":");
+        writer.write(Double.toString(snapshot.currentX()));
+        writer.write(",\"currentY\":");
+        writer.write(Double.toString(snapshot.currentY()));
+        writer.write(",\"screen\":");
+
+        Rectangle2D screen = snapshot.screenBounds();
+        if (screen == null) {
+            writer.write("null");
+        } else {
+            writer.write("{\"minX\":");
+            writer.write(Double.toString(screen.getMinX()));
+            writer.write(",\"minY\":");
+            writer.write(Double.toString(screen.getMinY()));
+            writer.write(",\"width\":");
+            writer.write(Double.toString(screen.getWidth()));
+            writer.write(",\"height\":");
+            writer.write(Double.toString(screen.getHeight()));
+            writer.write("}");
+        }
+        writer.write("}");
+    }
+
+    private void clickPoints(Map<String, String> parameters, Writer writer) throws IOException {
+        // 無限大同士を足すと範囲が求まらないため、省略したときの最小値は有限にする
+        double minX = parseDouble(parameters, "minX", -Double.MAX_VALUE);
+        double minY = parseDouble(parameters, "minY", -Double.MAX_VALUE);
+        double width = parseDouble(parameters, "width", Double.POSITIVE_INFINITY);
+        double height = parseDouble(parameters, "height", Double.POSITIVE_INFINITY);
+
+        ClickPointSnapshot snapshot = clickPoints.get();
+
+        writer.write("{\"points\":[");
+        boolean[] first = { true };
+        int count = snapshot.forEachIn(minX, minY, width, height, (x, y) -> {
+            try {
+                if (!first[0]) {
+                    writer.write(',');
+                }
+                first[0] = false;
+                writer.write('[');
+                writer.write(Double.toString(x));
+                writer.write(',');
+                writer.write(Double.toString(y));
+                writer.write(']');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.write("],\"count\":");
+        writer.write(Integer.toString(count));
+        writer.write("}");
+    }
+
+    private void trajectory(Map<String, String> parameters, Writer writer) throws IOException {
+        long first = trajectoryRecorder.getFirstSequence();
+
+        long from;
+        if (parameters.containsKey("since")) {
+            from = trajectoryRecorder.findSequence(parseLong(parameters, "since", 0));
+        } else {
+            from = Math.max(first, parseLong(parameters, "from", first));
+        }
+
+        int limit = (int) parseLong(parameters, "limit", DEFAULT_TRAJECTORY_LIMIT);
+        if (limit <= 0 || MAX_TRAJECTORY_LIMIT < limit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_TRAJECTORY_LIMIT + ": " + limit);
+        }
+
+        writer.write("{\"first\":");
+        writer.write(Long.toString(first));
+        writer.write(",\"end\":");
+        writer.write(Long.toString(trajectoryRecorder.getEndSequence()));
+        writer.write(",\"samples\":[");
+
+        boolean[] separator = { false };
+        long next = trajectoryRecorder.read(from, limit, (timestamp, x, y) -> {
+            try {
+                if (separator[0]) {
+                    writer.write(',');
+                }
+                separator[0] = true;
+                writer.write('[');
+                writer.write(Long.toString(timestamp));
+                writer.write(',');
+                writer.write(Float.toString(x));
+                writer.write(',');
+                writer.write(Float.toString(y));
+                writer.write(']');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        writer.write("],\"next\":");
+        writer.write(Long.toString(next));
+        writer.write("}");
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static double parseDouble(Map<String, String> parameters, String name, double defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not a number: " + value);
+        }
+    }
+
+    private static long parseLong(Map<String, String> parameters, String name, long defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not an integer: " + value);
+        }
+    }
+
+}
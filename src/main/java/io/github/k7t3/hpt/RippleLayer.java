@@ -0,0 +1,165 @@
+package io.github.k7t3.hpt;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * クリックした位置に表示する波紋エフェクトのレイヤ。
+ * <p>
+ * 波紋の{@link Circle}はあらかじめ固定数だけ生成して子ノードに登録しておき、表示・非表示を切り替えて再利用する。
+ * すべての波紋は一つの{@link AnimationTimer}で進め、表示中の波紋がなくなるとタイマを停止する。
+ * 同時に表示できる数を超えたときは最も古い波紋を打ち切って再利用する。
+ */
+class RippleLayer extends Group {
+
+    /**
+     * 同時に表示できる波紋の既定の数
+     */
+    static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * 波紋を表示する時間
+     */
+    private static final long DURATION_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 波紋の最大半径の初期半径に対する倍率
+     */
+    private static final double SCALE = 8;
+
+    /**
+     * 未開始の波紋の開始時刻
+     */
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private final double radius;
+
+    private final Circle[] ripples;
+
+    /**
+     * 波紋ごとの開始時刻。最初のパルスで確定する
+     */
+    private final long[] startTimes;
+
+    private final boolean[] active;
+
+    /**
+     * 次に使用する波紋。すべての波紋の表示時間は同じなので、順番に使えば最も古いものから再利用される
+     */
+    private int next = 0;
+
+    private int activeCount = 0;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            advance(now);
+        }
+    };
+
+    RippleLayer(SceneProperties properties, double radius) {
+        this(properties, radius, DEFAULT_CAPACITY);
+    }
+
+    RippleLayer(SceneProperties properties, double radius, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.radius = radius;
+        this.ripples = new Circle[capacity];
+        this.startTimes = new long[capacity];
+        this.active = new boolean[capacity];
+
+        setMouseTransparent(true);
+
+        for (int i = 0; i < capacity; i++) {
+            Circle ripple = new Circle(radius);
+            ripple.setFill(Color.TRANSPARENT);
+            ripple.strokeProperty().bind(properties.clickPointColorProperty());
+            ripple.setVisible(false);
+            ripples[i] = ripple;
+        }
+        getChildren().addAll(ripples);
+    }
+
+    /**
+     * 表示中の波紋の数。
+     */
+    int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * 指定した座標に波紋を表示する。
+     * @param x X座標
+     * @param y Y座標
+     */
+    void play(double x, double y) {
+        int index = next;
+        next = (next + 1) % ripples.length;
+
+        if (!active[index]) {
+            active[index] = true;
+            activeCount++;
+        }
+        startTimes[index] = NOT_STARTED;
+
+        Circle ripple = ripples[index];
+        ripple.setTranslateX(x);
+        ripple.setTranslateY(y);
+        ripple.setRadius(radius);
+        ripple.setOpacity(1);
+        ripple.setVisible(true);
+
+        timer.start();
+    }
+
+    /**
+     * すべての波紋を非表示にする。
+     */
+    void clear() {
+        timer.stop();
+        for (int i = 0; i < ripples.length; i++) {
+            deactivate(i);
+        }
+    }
+
+    private void advance(long now) {
+        for (int i = 0; i < ripples.length; i++) {
+            if (!active[i]) {
+                continue;
+            }
+            if (startTimes[i] == NOT_STARTED) {
+                startTimes[i] = now;
+            }
+
+            double progress = (double) (now - startTimes[i]) / DURATION_NANOS;
+            if (1 <= progress) {
+                deactivate(i);
+                continue;
+            }
+
+            Circle ripple = ripples[i];
+            ripple.setRadius(radius + radius * (SCALE - 1) * progress);
+            ripple.setOpacity(1 - progress);
+        }
+
+        if (activeCount == 0) {
+            timer.stop();
+        }
+    }
+
+    private void deactivate(int index) {
+        if (!active[index]) {
+            return;
+        }
+        active[index] = false;
+        activeCount--;
+        ripples[index].setVisible(false);
+    }
+
+}
@@ -1,6 +1,8 @@
 package io.github.k7t3.hpt;
 
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.*;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
@@ -35,13 +37,13 @@ public class SceneProperties implements Cloneable {
 
     private ObjectProperty<Screen> screen;
 
-    private DoubleProperty minX;
+    private GeometryProperty minX;
 
-    private DoubleProperty minY;
+    private GeometryProperty minY;
 
-    private DoubleProperty width;
+    private GeometryProperty width;
 
-    private DoubleProperty height;
+    private GeometryProperty height;
 
     private DoubleProperty edgeWidth;
 
@@ -63,6 +65,39 @@ public class SceneProperties implements Cloneable {
 
     private ObjectProperty<Font> labelFont;
 
+    private ReadOnlyObjectWrapper<Rectangle2D> geometry;
+
+    /**
+     * {@link #beginUpdate()}の入れ子の深さ。
+     */
+    private int updateDepth = 0;
+
+    /**
+     * 更新中に座標・サイズが変更されたか。
+     */
+    private boolean geometryChanged = false;
+
+    /**
+     * {@link #endUpdate()}で保留していた変更を通知しているか。
+     */
+    private boolean flushing = false;
+
+    /**
+     * 更新中にいずれかの値が変更されたか。
+     */
+    private boolean snapshotChanged = false;
+
+    private long snapshotVersion = 0;
+
+    /**
+     * 最後に発行したスナップショット。JavaFX Application Threadで発行し、任意のスレッドから読み出す
+     */
+    private volatile SceneSnapshot snapshot;
+
+    public SceneProperties() {
+        publishSnapshot();
+    }
+
     public Screen getScreen() {
         if (screen == null) {
             return null;
@@ -72,7 +107,7 @@ public class SceneProperties implements Cloneable {
 
     public ObjectProperty<Screen> screenProperty() {
         if (screen == null) {
-            screen = new SimpleObjectProperty<>();
+            screen = observe(new SimpleObjectProperty<>());
         }
         return screen;
     }
@@ -90,7 +125,7 @@ public class SceneProperties implements Cloneable {
 
     public DoubleProperty minXProperty() {
         if (minX == null) {
-            minX = new SimpleDoubleProperty(DEFAULT_MIN_X);
+            minX = observe(new GeometryProperty(DEFAULT_MIN_X));
         }
         return minX;
     }
@@ -108,7 +143,7 @@ public class SceneProperties implements Cloneable {
 
     public DoubleProperty minYProperty() {
         if (minY == null) {
-            minY = new SimpleDoubleProperty(DEFAULT_MIN_Y);
+            minY = observe(new GeometryProperty(DEFAULT_MIN_Y));
         }
         return minY;
     }
@@ -126,7 +161,7 @@ public class SceneProperties implements Cloneable {
 
     public DoubleProperty widthProperty() {
         if (width == null) {
-            width = new SimpleDoubleProperty(DEFAULT_WIDTH);
+            width = observe(new GeometryProperty(DEFAULT_WIDTH));
         }
         return width;
     }
@@ -144,7 +179,7 @@ public class SceneProperties implements Cloneable {
 
     public DoubleProperty heightProperty() {
         if (height == null) {
-            height = new SimpleDoubleProperty(DEFAULT_HEIGHT);
+            height = observe(new GeometryProperty(DEFAULT_HEIGHT));
         }
         return height;
     }
@@ -162,7 +197,7 @@ public class SceneProperties implements Cloneable {
 
     public DoubleProperty edgeWidthProperty() {
         if (edgeWidth == null) {
-            edgeWidth = new SimpleDoubleProperty(DEFAULT_EDGE_WIDTH);
+            edgeWidth = observe(new SimpleDoubleProperty(DEFAULT_EDGE_WIDTH));
         }
         return edgeWidth;
     }
@@ -180,7 +215,7 @@ public class SceneProperties implements Cloneable {
 
     public ObjectProperty<Color> paintColorProperty() {
         if (paintColor == null) {
-            paintColor = new SimpleObjectProperty<>(DEFAULT_PAINT_COLOR);
+            paintColor = observe(new SimpleObjectProperty<>(DEFAULT_PAINT_COLOR));
         }
         return paintColor;
     }
@@ -198,7 +233,7 @@ public class SceneProperties implements Cloneable {
 
     public ObjectProperty<Color> gridColorProperty() {
         if (gridColor == null) {
-            gridColor = new SimpleObjectProperty<>(DEFAULT_GRID_FILL);
+            gridColor = observe(new SimpleObjectProperty<>(DEFAULT_GRID_FILL));
         }
         return gridColor;
     }
@@ -216,7 +251,7 @@ public class SceneProperties implements Cloneable {
 
     public ObjectProperty<Color> sceneBorderColorProperty() {
         if (sceneBorderColor == null) {
-            sceneBorderColor = new SimpleObjectProperty<>(DEFAULT_SCENE_BORDER_FILL);
+            sceneBorderColor = observe(new SimpleObjectProperty<>(DEFAULT_SCENE_BORDER_FILL));
         }
         return sceneBorderColor;
     }
@@ -234,7 +269,7 @@ public class SceneProperties implements Cloneable {
 
     public ObjectProperty<Color> labelColorProperty() {
         if (labelColor == null) {
-            labelColor = new SimpleObjectProperty<>(DEFAULT_LABEL_FILL);
+            labelColor = observe(new SimpleObjectProperty<>(DEFAULT_LABEL_FILL));
         }
         return labelColor;
     }
@@ -252,7 +287,7 @@ public class SceneProperties implements Cloneable {
 
     public ObjectProperty<Color> clickPointColorProperty() {
         if (clickPointColor == null) {
-            clickPointColor = new SimpleObjectProperty<>(DEFAULT_CLICK_POINT_FILL);
+            clickPointColor = observe(new SimpleObjectProperty<>(DEFAULT_CLICK_POINT_FILL));
         }
         return clickPointColor;
     }
@@ -270,7 +305,7 @@ public class SceneProperties implements Cloneable {
 
     ReadOnlyDoubleWrapper currentXPropertyWrapper() {
         if (currentX == null) {
-            currentX = new ReadOnlyDoubleWrapper();
+            currentX = observe(new ReadOnlyDoubleWrapper());
         }
         return currentX;
     }
@@ -288,7 +323,7 @@ public class SceneProperties implements Cloneable {
 
     ReadOnlyDoubleWrapper currentYPropertyWrapper() {
         if (currentY == null) {
-            currentY = new ReadOnlyDoubleWrapper();
+            currentY = observe(new ReadOnlyDoubleWrapper());
         }
         return currentY;
     }
@@ -306,7 +341,7 @@ public class SceneProperties implements Cloneable {
 
     public ObjectProperty<Color> edgeColorProperty() {
         if (edgeColor == null) {
-            edgeColor = new SimpleObjectProperty<>(DEFAULT_EDGE_COLOR);
+            edgeColor = observe(new SimpleObjectProperty<>(DEFAULT_EDGE_COLOR));
         }
         return edgeColor;
     }
@@ -333,32 +368,246 @@ public class SceneProperties implements Cloneable {
         this.labelFontProperty().set(labelFont);
     }
 
+    /**
+     * 描画範囲の座標とサイズを表す矩形。
+     * <p>
+     * 座標・サイズのいずれかが変更されたときに通知される。
+     * {@link #beginUpdate()}から{@link #endUpdate()}の間の変更は、まとめて一度だけ通知される。
+     */
+    public ReadOnlyObjectProperty<Rectangle2D> geometryProperty() {
+        if (geometry == null) {
+            geometry = new ReadOnlyObjectWrapper<>(createGeometry());
+        }
+        return geometry.getReadOnlyProperty();
+    }
+
+    public Rectangle2D getGeometry() {
+        return geometryProperty().get();
+    }
+
+    /**
+     * 描画範囲の座標とサイズを一括で変更する。
+     * リスナへの通知はすべての値を変更した後に行われる。
+     * @param minX 最小X
+     * @param minY 最小Y
+     * @param width 幅
+     * @param height 高さ
+     */
+    public void setGeometry(double minX, double minY, double width, double height) {
+        beginUpdate();
+        try {
+            setMinX(minX);
+            setMinY(minY);
+            setWidth(width);
+            setHeight(height);
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * 座標・サイズの一括更新を開始する。
+     * <p>
+     * {@link #endUpdate()}を呼び出すまで、座標・サイズのプロパティのリスナへの通知を保留する。
+     * 値そのものは即座に変更されるため、更新中でもゲッタは最新の値を返す。
+     * 入れ子で呼び出した場合は最も外側の{@link #endUpdate()}で通知する。
+     */
+    public void beginUpdate() {
+        updateDepth++;
+    }
+
+    /**
+     * 座標・サイズの一括更新を終了し、保留していた変更を通知する。
+     */
+    public void endUpdate() {
+        if (updateDepth == 0) {
+            throw new IllegalStateException("endUpdate() without beginUpdate()");
+        }
+        if (--updateDepth != 0) {
+            return;
+        }
+
+        flushing = true;
+        try {
+            if (minX != null) {
+                minX.flush();
+            }
+            if (minY != null) {
+                minY.flush();
+            }
+            if (width != null) {
+                width.flush();
+            }
+            if (height != null) {
+                height.flush();
+            }
+        } finally {
+            flushing = false;
+        }
+
+        if (geometryChanged) {
+            geometryChanged = false;
+            updateGeometry();
+        }
+
+        if (snapshotChanged) {
+            snapshotChanged = false;
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * カーソル座標を変更する。スナップショットはX座標とY座標の両方を変更した後に一度だけ発行する。
+     * @param x X座標
+     * @param y Y座標
+     */
+    void setCurrentPosition(double x, double y) {
+        beginUpdate();
+        try {
+            currentXPropertyWrapper().set(x);
+            currentYPropertyWrapper().set(y);
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * 最後に変更されたときの値。
+     * <p>
+     * 値が変更されるたびに新しいスナップショットに置き換わり、{@link #beginUpdate()}から{@link #endUpdate()}の間の変更は
+     * まとめて一つのスナップショットになる。任意のスレッドから呼び出せる。
+     */
+    public SceneSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private <P extends Property<?>> P observe(P property) {
+        property.addListener((InvalidationListener) ob -> invalidateSnapshot());
+        return property;
+    }
+
+    private void invalidateSnapshot() {
+        if (0 < updateDepth || flushing) {
+            snapshotChanged = true;
+            return;
+        }
+        publishSnapshot();
+    }
+
+    private void publishSnapshot() {
+        // 値を読み出すことで各プロパティが次の変更でも通知するようになる
+        Screen screen = getScreen();
+        snapshot = new SceneSnapshot(
+                ++snapshotVersion,
+                screen != null ? screen.getBounds() : null,
+                getMinX(),
+                getMinY(),
+                getWidth(),
+                getHeight(),
+                getEdgeWidth(),
+                getPaintColor(),
+                getGridColor(),
+                getEdgeColor(),
+                getLabelColor(),
+                getClickPointColor(),
+                getSceneBorderColor(),
+                getCurrentX(),
+                getCurrentY());
+    }
+
+    private void updateGeometry() {
+        if (geometry != null) {
+            geometry.set(createGeometry());
+        }
+    }
+
+    private Rectangle2D createGeometry() {
+        // Rectangle2Dは負のサイズを受け付けないため0で切り詰める
+        return new Rectangle2D(getMinX(), getMinY(), Math.max(0, getWidth()), Math.max(0, getHeight()));
+    }
+
+    /**
+     * 一括更新中はリスナへの通知を保留する座標・サイズのプロパティ。
+     */
+    private final class GeometryProperty extends SimpleDoubleProperty {
+
+        private boolean pending = false;
+
+        GeometryProperty(double initialValue) {
+            super(initialValue);
+        }
+
+        @Override
+        protected void fireValueChangedEvent() {
+            if (0 < updateDepth) {
+                pending = true;
+                geometryChanged = true;
+                return;
+            }
+            super.fireValueChangedEvent();
+            updateGeometry();
+        }
+
+        /**
+         * 保留していた変更を通知する。
+         */
+        void flush() {
+            if (pending) {
+                pending = false;
+                super.fireValueChangedEvent();
+            }
+        }
+    }
+
+    /**
+     * 指定したプロパティと同じ値に戻す。{@link #clone()}で退避した値を元に戻すときに使用する。
+     * <p>
+     * 座標・サイズの変更は一度だけ通知される。カーソル座標は戻さない。
+     * @param source 戻す値を持つプロパティ
+     */
+    public void restore(SceneProperties source) {
+        beginUpdate();
+        try {
+            setScreen(source.getScreen());
+            setGeometry(source.getMinX(), source.getMinY(), source.getWidth(), source.getHeight());
+            setEdgeWidth(source.getEdgeWidth());
+            setPaintColor(source.getPaintColor());
+            setGridColor(source.getGridColor());
+            setSceneBorderColor(source.getSceneBorderColor());
+            setLabelColor(source.getLabelColor());
+            setClickPointColor(source.getClickPointColor());
+            setEdgeColor(source.getEdgeColor());
+            setLabelFont(source.getLabelFont());
+        } finally {
+            endUpdate();
+        }
+    }
+
     @Override
     public SceneProperties clone() {
         try {
             SceneProperties clone = (SceneProperties) super.clone();
             if (clickPointColor != null) {
-                clone.clickPointColor = new SimpleObjectProperty<>();
+                clone.clickPointColor = clone.observe(new SimpleObjectProperty<>());
                 clone.setClickPointColor(getClickPointColor());
             }
             if (edgeColor != null) {
-                clone.edgeColor = new SimpleObjectProperty<>();
+                clone.edgeColor = clone.observe(new SimpleObjectProperty<>());
                 clone.setEdgeColor(getEdgeColor());
             }
             if (edgeWidth != null) {
-                clone.edgeWidth = new SimpleDoubleProperty();
+                clone.edgeWidth = clone.observe(new SimpleDoubleProperty());
                 clone.setEdgeWidth(getEdgeWidth());
             }
             if (gridColor != null) {
-                clone.gridColor = new SimpleObjectProperty<>();
+                clone.gridColor = clone.observe(new SimpleObjectProperty<>());
                 clone.setGridColor(getGridColor());
             }
             if (height != null) {
-                clone.height = new SimpleDoubleProperty();
-                clone.setHeight(getHeight());
+                clone.height = clone.observe(clone.new GeometryProperty(getHeight()));
             }
             if (labelColor != null) {
-                clone.labelColor = new SimpleObjectProperty<>();
+                clone.labelColor = clone.observe(new SimpleObjectProperty<>());
                 clone.setLabelColor(getLabelColor());
             }
             if (labelFont != null) {
@@ -366,29 +615,36 @@ public class SceneProperties implements Cloneable {
                 clone.setLabelFont(getLabelFont());
             }
             if (minX != null) {
-                clone.minX = new SimpleDoubleProperty();
-                clone.setMinX(getMinX());
+                clone.minX = clone.observe(clone.new GeometryProperty(getMinX()));
             }
             if (minY != null) {
-                clone.minY = new SimpleDoubleProperty();
-                clone.setMinY(getMinY());
+                clone.minY = clone.observe(clone.new GeometryProperty(getMinY()));
             }
             if (paintColor != null) {
-                clone.paintColor = new SimpleObjectProperty<>();
+                clone.paintColor = clone.observe(new SimpleObjectProperty<>());
                 clone.setPaintColor(getPaintColor());
             }
             if (sceneBorderColor != null) {
-                clone.sceneBorderColor = new SimpleObjectProperty<>();
+                clone.sceneBorderColor = clone.observe(new SimpleObjectProperty<>());
                 clone.setSceneBorderColor(getSceneBorderColor());
             }
             if (screen != null) {
-                clone.screen = new SimpleObjectProperty<>();
+                clone.screen = clone.observe(new SimpleObjectProperty<>());
                 clone.setScreen(getScreen());
             }
             if (width != null) {
-                clone.width = new SimpleDoubleProperty();
-                clone.setWidth(getWidth());
+                clone.width = clone.observe(clone.new GeometryProperty(getWidth()));
             }
+            // カーソル座標のプロパティは共有しない
+            clone.currentX = currentX != null ? clone.observe(new ReadOnlyDoubleWrapper(getCurrentX())) : null;
+            clone.currentY = currentY != null ? clone.observe(new ReadOnlyDoubleWrapper(getCurrentY())) : null;
+            clone.geometry = null;
+            clone.updateDepth = 0;
+            clone.geometryChanged = false;
+            clone.flushing = false;
+            clone.snapshotChanged = false;
+            clone.snapshotVersion = 0;
+            clone.publishSnapshot();
             return clone;
         } catch (CloneNotSupportedException e) {
             throw new AssertionError();
@@ -0,0 +1,54 @@
+package io.github.k7t3.hpt;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.paint.Color;
+
+/**
+ * ある時点の{@link SceneProperties}の値。
+ * <p>
+ * 不変なので任意のスレッドから参照できる。{@link SceneProperties#getSnapshot()}で取得し、
+ * JavaFX Application Thread以外からでも座標やサイズ、色、カーソル座標を一貫した組み合わせで読み出せる。
+ *
+ * @param version 発行するたびに増える番号。同じ番号のスナップショットは同じ値を持つ
+ * @param screenBounds 選択しているディスプレイの範囲。選択していないときはnull
+ * @param minX 描画範囲の最小X
+ * @param minY 描画範囲の最小Y
+ * @param width 描画範囲の幅
+ * @param height 描画範囲の高さ
+ * @param edgeWidth 縁の幅
+ * @param paintColor 背景色
+ * @param gridColor カーソル座標の色
+ * @param edgeColor 縁の色
+ * @param labelColor 文字の色
+ * @param clickPointColor クリック座標の色
+ * @param sceneBorderColor ディスプレイの境界の色
+ * @param currentX カーソルのX座標
+ * @param currentY カーソルのY座標
+ */
+public record SceneSnapshot(
+        long version,
+        Rectangle2D screenBounds,
+        double minX,
+        double minY,
+        double width,
+        double height,
+        double edgeWidth,
+        Color paintColor,
+        Color gridColor,
+        Color edgeColor,
+        Color labelColor,
+        Color clickPointColor,
+        Color sceneBorderColor,
+        double currentX,
+        double currentY
+) {
+
+    /**
+     * 描画範囲の座標とサイズ。
+     */
+    public Rectangle2D geometry() {
+        // Rectangle2Dは負のサイズを受け付けないため0で切り詰める
+        return new Rectangle2D(minX, minY, Math.max(0, width), Math.max(0, height));
+    }
+
+}
@@ -0,0 +1,92 @@
+package io.github.k7t3.hpt;
+
+import javafx.geometry.Rectangle2D;
+import javafx.stage.Screen;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * ディスプレイとディスプレイ構成を識別する文字列。
+ * <p>
+ * {@link Screen#hashCode()}は実行ごとに変わるため保存には使えない。代わりに仮想スクリーン上の位置、大きさ、
+ * 出力スケールからディスプレイを識別する。ディスプレイ構成はすべてのディスプレイの識別子を並べたもので、
+ * 前回の実行から接続や配置が変わっていないかの判定に使用する。
+ */
+final class ScreenFingerprint {
+
+    private static final String SCREEN_SEPARATOR = ";";
+
+    private ScreenFingerprint() {
+    }
+
+    /**
+     * ディスプレイの識別子。
+     * @param screen ディスプレイ
+     * @return 例えば {@code 0,0,1920,1080@1.25}
+     */
+    static String of(Screen screen) {
+        Rectangle2D bounds = screen.getBounds();
+        return format(bounds.getMinX(), bounds.getMinY(), bounds.getWidth(), bounds.getHeight(),
+                screen.getOutputScaleX(), screen.getOutputScaleY());
+    }
+
+    static String format(double minX, double minY, double width, double height, double scaleX, double scaleY) {
+        StringBuilder builder = new StringBuilder();
+        appendNumber(builder, minX).append(',');
+        appendNumber(builder, minY).append(',');
+        appendNumber(builder, width).append(',');
+        appendNumber(builder, height).append('@');
+        appendNumber(builder, scaleX);
+        if (scaleX != scaleY) {
+            appendNumber(builder.append(','), scaleY);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * ディスプレイ構成の識別子。ディスプレイの並び順には依存しない。
+     * @param screens すべてのディスプレイ
+     */
+    static String layoutOf(Collection<Screen> screens) {
+        List<String> fingerprints = new ArrayList<>(screens.size());
+        for (Screen screen : screens) {
+            fingerprints.add(of(screen));
+        }
+        return layoutOfFingerprints(fingerprints);
+    }
+
+    static String layoutOfFingerprints(List<String> fingerprints) {
+        List<String> sorted = new ArrayList<>(fingerprints);
+        sorted.sort(null);
+        return String.join(SCREEN_SEPARATOR, sorted);
+    }
+
+    /**
+     * 識別子が一致するディスプレイを探す。
+     * @param screens すべてのディスプレイ
+     * @param fingerprint 識別子
+     */
+    static Optional<Screen> find(Collection<Screen> screens, String fingerprint) {
+        if (fingerprint == null || fingerprint.isEmpty()) {
+            return Optional.empty();
+        }
+        for (Screen screen : screens) {
+            if (fingerprint.equals(of(screen))) {
+                return Optional.of(screen);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static StringBuilder appendNumber(StringBuilder builder, double value) {
+        // 整数のときは小数点以下を付けない
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return builder.append((long) value);
+        }
+        return builder.append(value);
+    }
+
+}
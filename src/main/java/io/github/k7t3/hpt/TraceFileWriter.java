@@ -0,0 +1,331 @@
+package io.github.k7t3.hpt;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ポインタイベントをメモリマップした追記専用のバイナリファイルに書き出すライタ。
+ * <p>
+ * JavaFX Application Threadは{@link PointerEventQueue}にイベントを格納するだけで、
+ * ファイルへの書き込みはバックグラウンドスレッドで行う。キューが満杯のときは
+ * JavaFX Application Threadを待たせずにイベントを破棄する。
+ * <p>
+ * ファイルは最大{@link #SEGMENT_SIZE}ごとのセグメントに分割される。セグメントは{@link #MAP_SIZE}ずつマップして伸ばし、
+ * 閉じるときに書き込んだ位置で切り詰める。各セグメントの形式は以下の通り。
+ * 数値はすべてリトルエンディアン。
+ * <pre>
+ * ヘッダ(32バイト)
+ *   int  magic ("HPTT")
+ *   int  version
+ *   int  recordSize
+ *   int  segmentIndex
+ *   long セグメント作成時刻 (エポックミリ秒)
+ *   long セグメント作成時刻 ({@link System#nanoTime()})
+ * レコード(24バイト)
+ *   long timestamp ({@link System#nanoTime()})
+ *   float x
+ *   float y
+ *   int  type ({@link PointerEventType#ordinal()} + 1。0はデータの終端)
+ *   int  reserved
+ * </pre>
+ */
+public class TraceFileWriter implements PointerListener {
+
+    /**
+     * トレースファイルを保存する既定のディレクトリ。
+     */
+    public static final Path DEFAULT_DIRECTORY = PropertyManager.DATA_DIRECTORY.resolve("traces");
+
+    public static final int MAGIC = 0x54545048;
+
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 32;
+
+    public static final int RECORD_SIZE = 24;
+
+    /**
+     * セグメントファイルの最大の大きさ。
+     */
+    public static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * 一度にマップするレコードの領域の大きさ。レコードがマップの境界をまたがないようにレコードの大きさの倍数にする
+     */
+    static final int MAP_SIZE = RECORD_SIZE * (1024 * 1024 / RECORD_SIZE);
+
+    /**
+     * 1セグメントに書き込めるレコードの数
+     */
+    private static final int RECORDS_PER_SEGMENT = (SEGMENT_SIZE - HEADER_SIZE) / RECORD_SIZE;
+
+    private static final int QUEUE_CAPACITY = 1 << 16;
+
+    private static final int DRAIN_BATCH_SIZE = 4096;
+
+    private static final DateTimeFormatter SESSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Path directory;
+
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * 同じ時刻に開始したセッションのファイル名が重複しないように付ける連番
+     */
+    private final AtomicInteger sessionNumber = new AtomicInteger();
+
+    /**
+     * 書き出しを終えていないすべてのセッション
+     */
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 書き込み中のセッション。
+     */
+    private volatile Session session;
+
+    public TraceFileWriter() {
+        this(DEFAULT_DIRECTORY);
+    }
+
+    public TraceFileWriter(Path directory) {
+        this.directory = directory;
+    }
+
+    public boolean isRunning() {
+        Session session = this.session;
+        return session != null && session.running;
+    }
+
+    /**
+     * キューが満杯だったために破棄したイベントの数。
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 書き込みを開始する。ファイルは新しいセッションとして作成される。
+     * <p>
+     * 前回のセッションが書き出し中であっても待機せず、別のスレッドで並行して書き出す。
+     */
+    public void start() {
+        if (isRunning()) {
+            return;
+        }
+        Session session = new Session();
+        this.session = session;
+        sessions.add(session);
+        session.thread.start();
+    }
+
+    /**
+     * 書き込みを停止する。キューに残っているイベントはバックグラウンドスレッドで書き出される。
+     */
+    public void stop() {
+        Session session = this.session;
+        if (session == null) {
+            return;
+        }
+        session.running = false;
+        LockSupport.unpark(session.thread);
+    }
+
+    /**
+     * 書き込みを停止し、以前のセッションも含めて残っているイベントを書き終えるまで待つ。
+     * @param timeoutMillis 待機する最大時間
+     */
+    public void close(long timeoutMillis) {
+        stop();
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Session session : sessions) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return;
+            }
+            try {
+                session.thread.join(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void pointerChanged(PointerEventType type, long timestamp, double x, double y) {
+        Session session = this.session;
+        if (session == null || !session.running) {
+            return;
+        }
+        if (session.queue.offer(type, timestamp, x, y)) {
+            session.queue.signal();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * 一回の書き込みの開始から停止まで。キューとファイルはセッションごとに作成する。
+     */
+    private class Session implements Runnable {
+
+        private final PointerEventQueue queue = new PointerEventQueue(QUEUE_CAPACITY);
+
+        private final Thread thread = new Thread(this, "hpt-trace-writer");
+
+        private final String name = LocalDateTime.now().format(SESSION_FORMAT) + "-" + sessionNumber.getAndIncrement();
+
+        private volatile boolean running = true;
+
+        // 以下はバックグラウンドスレッドからのみ操作する
+
+        private int segmentIndex = 0;
+
+        private FileChannel channel;
+
+        private MappedByteBuffer segment;
+
+        /**
+         * マップしている領域のファイル上の開始位置
+         */
+        private long mappedPosition = 0;
+
+        private boolean failed = false;
+
+        Session() {
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    int count = queue.drain(this::write, DRAIN_BATCH_SIZE);
+                    if (0 < count) {
+                        continue;
+                    }
+                    if (!running && queue.isEmpty()) {
+                        break;
+                    }
+                    // イベントが格納されるか、停止されるまで待つ
+                    queue.awaitNotEmpty();
+                }
+            } finally {
+                closeSegment();
+                sessions.remove(this);
+            }
+        }
+
+        private void write(PointerEventType type, long timestamp, double x, double y) {
+            if (failed) {
+                return;
+            }
+
+            try {
+
+                if (segment == null) {
+                    openNextSegment();
+                } else if (segment.remaining() < RECORD_SIZE) {
+                    mapNext();
+                }
+
+                segment.putLong(timestamp);
+                segment.putFloat((float) x);
+                segment.putFloat((float) y);
+                segment.putInt(type.ordinal() + 1);
+                segment.putInt(0);
+
+            } catch (IOException e) {
+
+                e.printStackTrace();
+                failed = true;
+
+            }
+        }
+
+        private void openNextSegment() throws IOException {
+            closeSegment();
+
+            Files.createDirectories(directory);
+
+            Path path = directory.resolve(String.format("trace-%s-%04d.hpt", name, segmentIndex));
+            channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            mappedPosition = 0;
+            segment = map(0, HEADER_SIZE + Math.min(MAP_SIZE, (long) RECORDS_PER_SEGMENT * RECORD_SIZE));
+
+            segment.putInt(MAGIC);
+            segment.putInt(VERSION);
+            segment.putInt(RECORD_SIZE);
+            segment.putInt(segmentIndex);
+            segment.putLong(System.currentTimeMillis());
+            segment.putLong(System.nanoTime());
+
+            segmentIndex++;
+        }
+
+        /**
+         * 続きの領域をマップする。セグメントが一杯のときは次のセグメントを開く。
+         */
+        private void mapNext() throws IOException {
+            long position = mappedPosition + segment.position();
+            long end = HEADER_SIZE + (long) RECORDS_PER_SEGMENT * RECORD_SIZE;
+            if (end - position < RECORD_SIZE) {
+                openNextSegment();
+                return;
+            }
+
+            segment.force();
+            mappedPosition = position;
+            segment = map(position, Math.min(MAP_SIZE, end - position));
+        }
+
+        private MappedByteBuffer map(long position, long size) throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+
+        private void closeSegment() {
+            if (segment != null) {
+                long written = mappedPosition + segment.position();
+                segment.force();
+                segment = null;
+
+                // マップした領域の書き込んでいない部分を取り除く
+                try {
+                    channel.truncate(written);
+                } catch (IOException e) {
+                    // Windowsではマップが解放されるまで切り詰められない。残るのは最後にマップした領域の余りだけで、
+                    // 読み出す側は種別0のレコードを終端として扱う
+                }
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                channel = null;
+            }
+        }
+    }
+
+}
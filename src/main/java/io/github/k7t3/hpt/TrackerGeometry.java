@@ -0,0 +1,79 @@
+package io.github.k7t3.hpt;
+
+/**
+ * 描画範囲の移動・伸長に関する計算。
+ * <p>
+ * Sceneに依存しないため、JavaFXのツールキットを起動せずに単体で実行できる。
+ */
+final class TrackerGeometry {
+
+    private TrackerGeometry() {
+    }
+
+    /**
+     * ドラッグで移動したときの最小座標を、Sceneからはみ出さないように求める。
+     * @param sceneValue ドラッグしているポインタの座標
+     * @param grabOffset 掴んだ位置の最小座標からの距離
+     * @param extent 描画範囲の幅または高さ
+     * @param sceneExtent Sceneの幅または高さ
+     * @return 移動後の最小座標
+     */
+    static double dragMin(double sceneValue, double grabOffset, double extent, double sceneExtent) {
+        double value = Math.max(grabOffset, Math.min(sceneValue, sceneExtent - (extent - grabOffset)));
+        return value - grabOffset;
+    }
+
+    /**
+     * それぞれの入力パラメータが負数でない場合、指定方向に描画範囲を伸長する。
+     * 変更の通知は最後に一度だけ行う。
+     * @param properties 描画範囲のプロパティ
+     * @param minX 最小X
+     * @param minY 最小Y
+     * @param maxX 最大X
+     * @param maxY 最大Y
+     * @param widthLimit 幅の下限
+     * @param heightLimit 高さの下限
+     * @param sceneWidth Sceneの幅
+     * @param sceneHeight Sceneの高さ
+     */
+    static void stretch(
+            SceneProperties properties,
+            double minX,
+            double minY,
+            double maxX,
+            double maxY,
+            double widthLimit,
+            double heightLimit,
+            double sceneWidth,
+            double sceneHeight
+    ) {
+        properties.beginUpdate();
+        try {
+            if (0d <= minX) {
+                minX = Math.max(0, Math.min(properties.getMinX() + properties.getWidth() - widthLimit, minX));
+                double deltaX = properties.getMinX() - minX;
+                properties.setMinX(minX);
+                properties.setWidth(properties.getWidth() + deltaX);
+            }
+            if (0d <= minY) {
+                minY = Math.max(0, Math.min(properties.getMinY() + properties.getHeight() - heightLimit, minY));
+                double deltaY = properties.getMinY() - minY;
+                properties.setMinY(minY);
+                properties.setHeight(properties.getHeight() + deltaY);
+            }
+            if (0d <= maxX) {
+                maxX = Math.max(properties.getMinX() + widthLimit, Math.min(maxX, sceneWidth));
+                double deltaX = maxX - (properties.getMinX() + properties.getWidth());
+                properties.setWidth(properties.getWidth() + deltaX);
+            }
+            if (0d <= maxY) {
+                maxY = Math.max(properties.getMinY() + heightLimit, Math.min(maxY, sceneHeight));
+                double deltaY = maxY - (properties.getMinY() + properties.getHeight());
+                properties.setHeight(properties.getHeight() + deltaY);
+            }
+        } finally {
+            properties.endUpdate();
+        }
+    }
+
+}
@@ -0,0 +1,243 @@
+package io.github.k7t3.hpt;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * カーソルの軌跡(時刻, X, Y)を固定容量のリングバッファに記録するレコーダ。
+ * <p>
+ * サンプルはプリミティブ配列に直接書き込むため、記録中にオブジェクトは生成しない。
+ * 容量を超えると古いサンプルから上書きされる。
+ * <p>
+ * 記録はJavaFX Application Threadから行い、読み出しは任意のスレッドからロックなしで行える。
+ * 読み出し中に上書きされたサンプルは読み飛ばされる。
+ */
+public class TrajectoryRecorder implements PointerListener {
+
+    /**
+     * 既定の容量。1000Hzのマウスで約70分。
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 22;
+
+    /**
+     * サンプルを受け取るコールバック。
+     */
+    @FunctionalInterface
+    public interface SampleConsumer {
+        void accept(long timestamp, float x, float y);
+    }
+
+    private final int capacity;
+
+    private final int mask;
+
+    private long[] timestamps;
+
+    private float[] xs;
+
+    private float[] ys;
+
+    /**
+     * これまでに書き込んだサンプルの総数。次に書き込むサンプルのシーケンス番号。
+     */
+    private volatile long written = 0;
+
+    /**
+     * 消去した時点のシーケンス番号。これより前のサンプルは読み出さない。
+     */
+    private volatile long cleared = 0;
+
+    private volatile boolean recording = false;
+
+    public TrajectoryRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 容量。2のべき乗に切り上げられる。
+     */
+    public TrajectoryRecorder(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * 記録を開始する。初回のみバッファを確保する。
+     */
+    public void start() {
+        if (timestamps == null) {
+            timestamps = new long[capacity];
+            xs = new float[capacity];
+            ys = new float[capacity];
+        }
+        recording = true;
+    }
+
+    /**
+     * 記録を停止する。記録済みのサンプルは保持される。
+     */
+    public void stop() {
+        recording = false;
+    }
+
+    /**
+     * 記録済みのサンプルを消去する。
+     */
+    public void clear() {
+        cleared = written;
+    }
+
+    @Override
+    public void pointerChanged(PointerEventType type, long timestamp, double x, double y) {
+        if (!recording || type == PointerEventType.CLICKED) {
+            return;
+        }
+        record(timestamp, (float) x, (float) y);
+    }
+
+    /**
+     * サンプルを記録する。
+     * @param timestamp 時刻({@link System#nanoTime()})
+     * @param x X座標
+     * @param y Y座標
+     */
+    void record(long timestamp, float x, float y) {
+        long sequence = written;
+        int index = (int) sequence & mask;
+        timestamps[index] = timestamp;
+        xs[index] = x;
+        ys[index] = y;
+        written = sequence + 1;
+    }
+
+    /**
+     * 読み出せる最も古いサンプルのシーケンス番号。
+     */
+    public long getFirstSequence() {
+        return Math.max(cleared, written - capacity + 1);
+    }
+
+    /**
+     * 最新のサンプルの次のシーケンス番号。
+     */
+    public long getEndSequence() {
+        return written;
+    }
+
+    /**
+     * 読み出せるサンプルの数。
+     */
+    public int size() {
+        long end = written;
+        return (int) Math.max(0, end - Math.max(cleared, end - capacity + 1));
+    }
+
+    /**
+     * 指定したシーケンス番号から最大{@code maxCount}件のサンプルを読み出す。
+     * <p>
+     * 上書きされていたサンプルは読み飛ばす。
+     * @param sequence 読み出しを開始するシーケンス番号
+     * @param maxCount 読み出す最大件数
+     * @param consumer コールバック
+     * @return 次に読み出すシーケンス番号
+     */
+    public long read(long sequence, int maxCount, SampleConsumer consumer) {
+        if (timestamps == null) {
+            return sequence;
+        }
+
+        long end = Math.min(written, sequence + maxCount);
+        long current = Math.max(sequence, getFirstSequence());
+
+        for (; current < end; current++) {
+            int index = (int) current & mask;
+            long timestamp = timestamps[index];
+            float x = xs[index];
+            float y = ys[index];
+
+            // 読み出した後に上書きされていないことを確認する
+            VarHandle.loadLoadFence();
+            if (current < written - capacity + 1) {
+                current = getFirstSequence() - 1;
+                continue;
+            }
+
+            consumer.accept(timestamp, x, y);
+        }
+
+        return current;
+    }
+
+    /**
+     * 指定した時刻の範囲[from, to)に含まれるサンプルを読み出す。
+     * @param from 開始時刻(含む)
+     * @param to 終了時刻(含まない)
+     * @param consumer コールバック
+     * @return 読み出した件数
+     */
+    public int window(long from, long to, SampleConsumer consumer) {
+        long sequence = findSequence(from);
+        long end = written;
+        int count = 0;
+
+        while (sequence < end) {
+            int index = (int) sequence & mask;
+            long timestamp = timestamps[index];
+            float x = xs[index];
+            float y = ys[index];
+
+            VarHandle.loadLoadFence();
+            if (sequence < written - capacity + 1) {
+                sequence = getFirstSequence();
+                continue;
+            }
+
+            if (to <= timestamp) {
+                break;
+            }
+
+            consumer.accept(timestamp, x, y);
+            count++;
+            sequence++;
+        }
+
+        return count;
+    }
+
+    /**
+     * 指定した時刻以降で最初のサンプルのシーケンス番号を二分探索で求める。
+     * @param timestamp 時刻
+     * @return シーケンス番号。該当するサンプルがないときは{@link #getEndSequence()}
+     */
+    public long findSequence(long timestamp) {
+        if (timestamps == null) {
+            return written;
+        }
+
+        // 探索中に上書きされた場合は範囲の先頭にずれるだけで結果は単調に保たれる
+        long low = getFirstSequence();
+        long high = written;
+
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (timestamps[(int) middle & mask] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+}
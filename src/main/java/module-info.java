@@ -3,6 +3,9 @@ module HoveringPointTracker {
     requires javafx.controls;
     requires javafx.graphics;
     requires javafx.fxml;
+    requires java.management;
+    requires jdk.httpserver;
 
     opens io.github.k7t3.hpt to javafx.graphics, javafx.fxml;
+    exports io.github.k7t3.hpt to java.management;
 }
\ No newline at end of file
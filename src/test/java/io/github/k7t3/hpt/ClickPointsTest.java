@@ -0,0 +1,167 @@
+package io.github.k7t3.hpt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClickPointsTest {
+
+    private ClickPoints points;
+
+    @BeforeEach
+    void setUp() {
+        points = new ClickPoints();
+    }
+
+    @Test
+    void testAddAndRemoveLast() {
+        for (int i = 0; i < 1000; i++) {
+            points.add(i, i * 2);
+        }
+        assertEquals(1000, points.size());
+        assertEquals(999, points.getX(999));
+        assertEquals(1998, points.getY(999));
+        assertEquals(999, points.findNearest(999, 1998, 3));
+
+        assertTrue(points.removeLast());
+        assertEquals(999, points.size());
+
+        points.clear();
+        assertTrue(points.isEmpty());
+        assertFalse(points.removeLast());
+    }
+
+    @Test
+    void testRetainIntersecting() {
+        points.add(10, 10);
+        points.add(150, 150);
+        points.add(98, 98);
+        points.add(300, 20);
+
+        int removed = points.retainIntersecting(100, 100, 100, 100, 3);
+
+        assertEquals(2, removed);
+        assertEquals(2, points.size());
+
+        double[] xs = new double[2];
+        int[] count = new int[1];
+        points.forEach((x, y) -> xs[count[0]++] = x);
+        assertEquals(150, xs[0]);
+        assertEquals(98, xs[1]);
+    }
+
+    @Test
+    void testRetainIntersectingMatchesLinearSweep() {
+        var random = new Random(1);
+        var expected = new ClickPoints();
+        for (int i = 0; i < 5000; i++) {
+            double x = random.nextDouble() * 1920;
+            double y = random.nextDouble() * 1080;
+            points.add(x, y);
+            if (200 - 3 < x && 100 - 3 < y && x < 200 + 640 && y < 100 + 480) {
+                expected.add(x, y);
+            }
+        }
+
+        points.retainIntersecting(200, 100, 640, 480, 3);
+
+        assertEquals(expected.size(), points.size());
+        expected.forEach((x, y) -> assertTrue(0 <= points.findNearest(x, y, 0)));
+    }
+
+    @Test
+    void testGrowGridAfterRemove() {
+        points.add(10, 10);
+        points.add(500, 500);
+        points.add(20, 20);
+        points.add(30, 30);
+
+        assertEquals(1, points.retainIntersecting(0, 0, 100, 100, 3));
+        assertTrue(points.removeLast());
+
+        // グリッドを拡張しても削除した座標は戻らない
+        points.add(5000, 5000);
+
+        assertEquals(3, points.size());
+        int[] count = new int[1];
+        points.forEach((x, y) -> {
+            assertNotEquals(500, x);
+            assertNotEquals(30, x);
+            count[0]++;
+        });
+        assertEquals(3, count[0]);
+        assertEquals(-1, points.findNearest(500, 500, 3));
+        assertEquals(-1, points.findNearest(30, 30, 3));
+
+        var snapshot = points.snapshot();
+        assertEquals(3, snapshot.size());
+        assertEquals(10, snapshot.getX(0));
+        assertEquals(20, snapshot.getX(1));
+        assertEquals(5000, snapshot.getX(2));
+    }
+
+    @Test
+    void testCompactAfterRemove() {
+        for (int i = 0; i < 64; i++) {
+            points.add(i, i);
+        }
+        // 半分より多くを削除してから追加すると詰めなおされる
+        assertEquals(40, points.retainIntersecting(40, 40, 100, 100, 0.5));
+        for (int i = 0; i < 10; i++) {
+            points.add(1000 + i, 1000 + i);
+        }
+
+        assertEquals(34, points.size());
+        assertEquals(-1, points.findNearest(0, 0, 0.5));
+        assertTrue(0 <= points.findNearest(40, 40, 0));
+        assertTrue(0 <= points.findNearest(1009, 1009, 0));
+        assertEquals(34, points.snapshot().size());
+    }
+
+    @Test
+    void testForEachInMatchesLinearSweep() {
+        var random = new Random(2);
+        for (int i = 0; i < 5000; i++) {
+            points.add(random.nextDouble() * 3840 - 100, random.nextDouble() * 2160 - 100);
+        }
+        points.retainIntersecting(0, 0, 3000, 2000, 3);
+
+        int[] expected = new int[1];
+        points.forEach((x, y) -> {
+            if (500 <= x && x <= 1300 && -50 <= y && y <= 700) {
+                expected[0]++;
+            }
+        });
+
+        int[] actual = new int[1];
+        points.forEachIn(500, -50, 1300, 700, (x, y) -> {
+            assertTrue(500 <= x && x <= 1300 && -50 <= y && y <= 700);
+            actual[0]++;
+        });
+        assertEquals(expected[0], actual[0]);
+    }
+
+    @Test
+    void testClearReusesCells() {
+        points.add(10, 10);
+        points.clear();
+        assertEquals(-1, points.findNearest(10, 10, 3));
+
+        points.add(20, 20);
+        assertEquals(1, points.size());
+        assertEquals(0, points.findNearest(20, 20, 3));
+    }
+
+    @Test
+    void testFindNearest() {
+        points.add(10, 10);
+        points.add(12, 10);
+
+        assertEquals(1, points.findNearest(13, 10, 3));
+        assertEquals(0, points.findNearest(9, 10, 3));
+        assertEquals(-1, points.findNearest(50, 50, 3));
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.k7t3.hpt;
+
+import javafx.beans.property.SimpleDoubleProperty;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoordinateFormatterTest {
+
+    @Test
+    void testSameAsStringFormat() {
+        double[] values = { 0, 0.4, 0.5, 1.5, 2.5, 12.49, 999.5, 1234.7, 98765.4, -0.5, -3.6, -1234.5,
+                0.49999999999999994, -0.49999999999999994, -0.4, -0.0, 4503599627370497.0, -4503599627370497.0 };
+        for (double x : values) {
+            for (double y : values) {
+                assertEquals(String.format("(%4.0f,%4.0f)", x, y), CoordinateFormatter.formatPoint(x, y));
+            }
+        }
+    }
+
+    @Test
+    void testUpdateOnlyWhenIntegerChanges() {
+        var x = new SimpleDoubleProperty(10.2);
+        var y = new SimpleDoubleProperty(20);
+        var formatter = new CoordinateFormatter("(", 4, ",", ")", x, y);
+        assertEquals("(  10,  20)", formatter.getText());
+
+        var changes = new AtomicInteger();
+        formatter.textProperty().addListener((ob, o, n) -> changes.incrementAndGet());
+
+        x.set(10.4);
+        y.set(19.6);
+        assertEquals(0, changes.get());
+
+        x.set(10.6);
+        assertEquals(1, changes.get());
+        assertEquals("(  11,  20)", formatter.getText());
+
+        // 丸めた値が同じでも符号が変われば更新する
+        x.set(0.2);
+        assertEquals("(   0,  20)", formatter.getText());
+        x.set(-0.2);
+        assertEquals("(  -0,  20)", formatter.getText());
+
+        var w = new SimpleDoubleProperty(300);
+        assertEquals("w = 300", new CoordinateFormatter("w = ", 0, "", "", w).getText());
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.k7t3.hpt;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DwellHeatmapLayerTest {
+
+    private static int alpha(int argb) {
+        return argb >>> 24;
+    }
+
+    @Test
+    void testColorOf() {
+        // 留まっていないセルは透明
+        assertEquals(0, DwellHeatmapLayer.colorOf(0));
+
+        // 1ミリ秒でも留まっていれば見える
+        assertNotEquals(0, alpha(DwellHeatmapLayer.colorOf(1)));
+
+        // 長く留まるほど不透明になる
+        int previous = 0;
+        for (int millis = 1; millis <= DwellHeatmapLayer.SATURATION_MILLIS; millis += 100) {
+            int alpha = alpha(DwellHeatmapLayer.colorOf(millis));
+            assertTrue(previous <= alpha);
+            previous = alpha;
+        }
+
+        // 飽和した後は変わらない
+        int saturated = DwellHeatmapLayer.colorOf(DwellHeatmapLayer.SATURATION_MILLIS);
+        assertEquals(saturated, DwellHeatmapLayer.colorOf(DwellHeatmapLayer.SATURATION_MILLIS * 10));
+        assertEquals(saturated, DwellHeatmapLayer.colorOf(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void testColorOfIsPremultiplied() {
+        for (int millis = 1; millis <= DwellHeatmapLayer.SATURATION_MILLIS; millis += 50) {
+            int argb = DwellHeatmapLayer.colorOf(millis);
+            int a = alpha(argb);
+            assertTrue(((argb >> 16) & 0xff) <= a);
+            assertTrue(((argb >> 8) & 0xff) <= a);
+            assertTrue((argb & 0xff) <= a);
+        }
+    }
+
+}
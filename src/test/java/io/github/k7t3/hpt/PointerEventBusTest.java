@@ -0,0 +1,117 @@
+package io.github.k7t3.hpt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PointerEventBusTest {
+
+    /**
+     * 最初のイベントを受け取ったところで止まる購読者。
+     */
+    private static class BlockedListener implements PointerListener {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        private final List<Long> received = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void pointerChanged(PointerEventType type, long timestamp, double x, double y) {
+            received.add(timestamp);
+            entered.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static List<Long> publishWhileBlocked(PointerEventBus.OverflowPolicy policy,
+                                                  BlockedListener listener) throws InterruptedException {
+        var bus = new PointerEventBus();
+        var subscription = bus.subscribe(listener, policy, 4);
+
+        bus.pointerChanged(PointerEventType.MOVED, 0, 0, 0);
+        assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+
+        for (int i = 1; i <= 10; i++) {
+            bus.pointerChanged(PointerEventType.MOVED, i, i, i);
+        }
+
+        listener.released.countDown();
+        subscription.close(10_000);
+        assertFalse(subscription.isActive());
+        assertEquals(0, bus.getSubscriptionCount());
+        assertEquals(6, subscription.getDroppedCount());
+        return listener.received;
+    }
+
+    @Test
+    void testDropOldest() throws InterruptedException {
+        var received = publishWhileBlocked(PointerEventBus.OverflowPolicy.DROP_OLDEST, new BlockedListener());
+        assertEquals(List.of(0L, 7L, 8L, 9L, 10L), received);
+    }
+
+    @Test
+    void testDropNewest() throws InterruptedException {
+        var received = publishWhileBlocked(PointerEventBus.OverflowPolicy.DROP_NEWEST, new BlockedListener());
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L), received);
+    }
+
+    @Test
+    void testBlock() throws InterruptedException {
+        var bus = new PointerEventBus();
+        var received = new CopyOnWriteArrayList<Long>();
+        var subscription = bus.subscribe((type, timestamp, x, y) -> received.add(timestamp),
+                PointerEventBus.OverflowPolicy.BLOCK, 4);
+
+        int count = 10_000;
+        for (int i = 0; i < count; i++) {
+            bus.pointerChanged(PointerEventType.MOVED, i, i, i);
+        }
+        subscription.close(10_000);
+
+        assertEquals(0, subscription.getDroppedCount());
+        assertEquals(count, received.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, received.get(i));
+        }
+    }
+
+    @Test
+    void testDropOldestKeepsOrderUnderLoad() throws InterruptedException {
+        var bus = new PointerEventBus();
+        var received = new CopyOnWriteArrayList<Long>();
+        var torn = new AtomicInteger();
+        var subscription = bus.subscribe((type, timestamp, x, y) -> {
+            // 上書き中のイベントを受け取っていないか
+            if (x != timestamp || y != timestamp) {
+                torn.incrementAndGet();
+            }
+            received.add(timestamp);
+        }, PointerEventBus.OverflowPolicy.DROP_OLDEST, 16);
+
+        int count = 100_000;
+        for (int i = 0; i < count; i++) {
+            bus.pointerChanged(PointerEventType.MOVED, i, i, i);
+        }
+        subscription.close(10_000);
+
+        // 破棄されたイベントがあっても順序は変わらず、最後のイベントは必ず届く
+        assertEquals(count, received.size() + subscription.getDroppedCount());
+        for (int i = 1; i < received.size(); i++) {
+            assertTrue(received.get(i - 1) < received.get(i));
+        }
+        assertEquals(count - 1, received.get(received.size() - 1));
+        assertEquals(0, torn.get());
+    }
+}
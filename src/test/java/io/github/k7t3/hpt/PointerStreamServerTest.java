@@ -0,0 +1,114 @@
+package io.github.k7t3.hpt;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PointerStreamServerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testStream() throws IOException, InterruptedException {
+        var bus = new PointerEventBus();
+        var properties = new SceneProperties();
+        properties.setCurrentPosition(12, 34);
+
+        Path socketPath = directory.resolve("hpt.sock");
+        var server = new PointerStreamServer(bus, properties, socketPath, 0);
+        server.start();
+        try (SocketChannel channel = SocketChannel.open(server.getAddress())) {
+
+            var reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.US_ASCII));
+
+            // 接続すると現在の座標が届く
+            String first = reader.readLine();
+            assertTrue(first.startsWith("{\"type\":\"POSITION\""), first);
+            assertTrue(first.endsWith(",\"x\":12.0,\"y\":34.0}"), first);
+
+            // 購読を開始するまで待つ
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (bus.getSubscriptionCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, server.getClientCount());
+
+            bus.pointerChanged(PointerEventType.MOVED, 100, 1.5, 2.5);
+            bus.pointerChanged(PointerEventType.CLICKED, 200, 3, 4);
+
+            assertEquals("{\"type\":\"MOVED\",\"timestamp\":100,\"x\":1.5,\"y\":2.5}", reader.readLine());
+            assertEquals("{\"type\":\"CLICKED\",\"timestamp\":200,\"x\":3.0,\"y\":4.0}", reader.readLine());
+
+        } finally {
+            server.stop();
+        }
+
+        assertFalse(server.isRunning());
+        assertEquals(0, server.getClientCount());
+        assertEquals(0, bus.getSubscriptionCount());
+        assertFalse(Files.exists(socketPath));
+    }
+
+    @Test
+    void testDoesNotTakeOverRunningInstance() throws IOException {
+        var bus = new PointerEventBus();
+        var properties = new SceneProperties();
+
+        Path socketPath = directory.resolve("hpt.sock");
+        var server = new PointerStreamServer(bus, properties, socketPath, 0);
+        server.start();
+        try {
+
+            // ソケットファイルはUnixドメインソケットで待ち受けたときだけ作成される
+            assumeTrue(Files.exists(socketPath));
+
+            var other = new PointerStreamServer(bus, properties, socketPath, 0);
+            assertThrows(IOException.class, other::start);
+            assertFalse(other.isRunning());
+
+            // 先に起動したサーバには接続できる
+            try (SocketChannel channel = SocketChannel.open(server.getAddress())) {
+                assertTrue(channel.isConnected());
+            }
+
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void testDeletesStaleSocket() throws IOException {
+        Path socketPath = directory.resolve("hpt.sock");
+
+        // 異常終了したときのように、閉じてもソケットファイルが残る
+        try (var stale = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            stale.bind(UnixDomainSocketAddress.of(socketPath));
+        } catch (UnsupportedOperationException e) {
+            assumeTrue(false, "unix domain socket is not supported");
+        }
+        assertTrue(Files.exists(socketPath));
+
+        var server = new PointerStreamServer(new PointerEventBus(), new SceneProperties(), socketPath, 0);
+        server.start();
+        try {
+            assertEquals(UnixDomainSocketAddress.of(socketPath), server.getAddress());
+        } finally {
+            server.stop();
+        }
+    }
+}
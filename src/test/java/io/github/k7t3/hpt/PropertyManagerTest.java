@@ -0,0 +1,57 @@
+package io.github.k7t3.hpt;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PropertyManagerTest {
+
+    @Test
+    void testWriteReplacesFile(@TempDir Path directory) throws IOException {
+        var path = directory.resolve("properties.xml");
+
+        var properties = new SceneProperties();
+        properties.setGeometry(10, 20, 300, 400);
+        properties.setPaintColor(Color.RED);
+
+        var manager = new PropertyManager(properties, path);
+        manager.write(manager.snapshot());
+
+        properties.setGeometry(30, 40, 500, 600);
+        manager.write(manager.snapshot());
+
+        // 一時ファイルは残らない
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+
+        var loaded = new SceneProperties();
+        new PropertyManager(loaded, path).load();
+        assertEquals(30, loaded.getMinX());
+        assertEquals(40, loaded.getMinY());
+        assertEquals(500, loaded.getWidth());
+        assertEquals(600, loaded.getHeight());
+        assertEquals(Color.RED, loaded.getPaintColor());
+    }
+
+    @Test
+    void testHasChanges() {
+        var properties = new SceneProperties();
+        var manager = new PropertyManager(properties, Path.of("unused.xml"));
+
+        var before = manager.snapshot();
+        assertTrue(AutosaveService.hasChanges(null, before));
+        assertFalse(AutosaveService.hasChanges(before, manager.snapshot()));
+
+        properties.setEdgeWidth(properties.getEdgeWidth() + 1);
+        assertTrue(AutosaveService.hasChanges(before, manager.snapshot()));
+    }
+
+}
@@ -0,0 +1,100 @@
+package io.github.k7t3.hpt;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryServerTest {
+
+    private final SceneProperties properties = new SceneProperties();
+
+    private final TrajectoryRecorder recorder = new TrajectoryRecorder(16);
+
+    private ClickPointSnapshot clickPoints = ClickPointSnapshot.EMPTY;
+
+    private QueryServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new QueryServer(properties, () -> clickPoints, recorder, 0);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        assertFalse(server.isRunning());
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        var url = new URL("http", "127.0.0.1", server.getAddress().getPort(), path);
+        return (HttpURLConnection) url.openConnection();
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = open(path);
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream stream = connection.getInputStream()) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void testGeometry() throws IOException {
+        properties.setGeometry(10, 20, 300, 400);
+        properties.setCurrentPosition(50, 60);
+
+        String body = get("/geometry");
+        assertTrue(body.contains("\"minX\":10.0,\"minY\":20.0,\"width\":300.0,\"height\":400.0"), body);
+        assertTrue(body.contains("\"currentX\":50.0,\"currentY\":60.0"), body);
+        assertTrue(body.endsWith("\"screen\":null}"), body);
+    }
+
+    @Test
+    void testClickPoints() throws IOException {
+        var points = new ClickPoints();
+        points.add(1, 1);
+        points.add(5, 5);
+        points.add(9, 9);
+        clickPoints = points.snapshot();
+
+        assertEquals("{\"points\":[[1.0,1.0],[5.0,5.0],[9.0,9.0]],\"count\":3}", get("/clickpoints"));
+        assertEquals("{\"points\":[[5.0,5.0]],\"count\":1}", get("/clickpoints?minX=2&minY=2&width=5&height=5"));
+        assertEquals(400, open("/clickpoints?minX=a").getResponseCode());
+    }
+
+    @Test
+    void testTrajectoryPaging() throws IOException {
+        recorder.start();
+        for (int i = 0; i < 20; i++) {
+            recorder.record(i * 10L, i, i);
+        }
+
+        // 容量16のため最初の4件は上書きされている
+        String page = get("/trajectory?limit=3");
+        assertEquals("{\"first\":5,\"end\":20,\"samples\":[[50,5.0,5.0],[60,6.0,6.0],[70,7.0,7.0]],\"next\":8}", page);
+
+        page = get("/trajectory?from=18&limit=10");
+        assertEquals("{\"first\":5,\"end\":20,\"samples\":[[180,18.0,18.0],[190,19.0,19.0]],\"next\":20}", page);
+
+        page = get("/trajectory?since=165&limit=1");
+        assertEquals("{\"first\":5,\"end\":20,\"samples\":[[170,17.0,17.0]],\"next\":18}", page);
+
+        assertEquals(400, open("/trajectory?limit=0").getResponseCode());
+    }
+
+    @Test
+    void testMethodNotAllowed() throws IOException {
+        HttpURLConnection connection = open("/geometry");
+        connection.setRequestMethod("POST");
+        assertEquals(405, connection.getResponseCode());
+    }
+}
@@ -1,9 +1,14 @@
 package io.github.k7t3.hpt;
 
+import javafx.geometry.Rectangle2D;
 import javafx.scene.paint.Color;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ScenePropertiesTest {
@@ -34,4 +39,106 @@ class ScenePropertiesTest {
 
         System.out.println("done testClone");
     }
+
+    @Test
+    void testRestore() {
+        properties.setGeometry(10, 20, 300, 400);
+        properties.setPaintColor(Color.RED);
+
+        var backup = properties.clone();
+
+        var geometryChanges = new AtomicInteger();
+        properties.geometryProperty().addListener((ob, o, n) -> geometryChanges.incrementAndGet());
+
+        properties.setGeometry(50, 60, 700, 800);
+        properties.setPaintColor(Color.BLUE);
+        geometryChanges.set(0);
+
+        properties.restore(backup);
+
+        assertEquals(new Rectangle2D(10, 20, 300, 400), properties.getGeometry());
+        assertEquals(Color.RED, properties.getPaintColor());
+        assertEquals(1, geometryChanges.get());
+    }
+
+    @Test
+    void testSnapshot() {
+        var initial = properties.getSnapshot();
+        assertNotNull(initial);
+        assertEquals(properties.getGeometry(), initial.geometry());
+
+        properties.setPaintColor(Color.RED);
+        var colored = properties.getSnapshot();
+        assertEquals(initial.version() + 1, colored.version());
+        assertEquals(Color.RED, colored.paintColor());
+
+        // 一括更新の間の変更は一つのスナップショットになる
+        properties.setGeometry(10, 20, 300, 400);
+        var moved = properties.getSnapshot();
+        assertEquals(colored.version() + 1, moved.version());
+        assertEquals(new Rectangle2D(10, 20, 300, 400), moved.geometry());
+
+        properties.setCurrentPosition(50, 60);
+        var pointed = properties.getSnapshot();
+        assertEquals(moved.version() + 1, pointed.version());
+        assertEquals(50, pointed.currentX());
+        assertEquals(60, pointed.currentY());
+
+        // 複製への変更は元のスナップショットに影響しない
+        var copied = properties.clone();
+        copied.setWidth(100);
+        copied.setCurrentPosition(70, 80);
+        assertSame(pointed, properties.getSnapshot());
+        assertEquals(100, copied.getSnapshot().width());
+        assertEquals(50, properties.getCurrentX());
+    }
+
+    @Test
+    void testGeometryBatchUpdate() {
+        System.out.println("testGeometryBatchUpdate");
+
+        // ドラッグ1回分の変更で発生する通知の回数と、通知時点での右端の座標を記録する
+        var geometryChanges = new AtomicInteger();
+        var maxXs = new ArrayList<Double>();
+        properties.geometryProperty().addListener((ob, o, n) -> geometryChanges.incrementAndGet());
+        properties.minXProperty().addListener((ob, o, n) -> maxXs.add(properties.getMinX() + properties.getWidth()));
+        properties.widthProperty().addListener((ob, o, n) -> maxXs.add(properties.getMinX() + properties.getWidth()));
+
+        properties.setMinX(10);
+        properties.setWidth(100);
+        properties.setMinY(20);
+        properties.setHeight(200);
+        System.out.printf("unbatched: geometry=%d, maxX=%s%n", geometryChanges.get(), maxXs);
+        assertEquals(4, geometryChanges.get());
+        assertEquals(List.of(310d, 110d), maxXs);
+
+        geometryChanges.set(0);
+        maxXs.clear();
+
+        properties.setGeometry(30, 40, 300, 400);
+        System.out.printf("batched: geometry=%d, maxX=%s%n", geometryChanges.get(), maxXs);
+        assertEquals(1, geometryChanges.get());
+        assertEquals(List.of(330d, 330d), maxXs);
+        assertEquals(new Rectangle2D(30, 40, 300, 400), properties.getGeometry());
+
+        System.out.println("done testGeometryBatchUpdate");
+    }
+
+    @Test
+    void testNestedBatchUpdate() {
+        var geometryChanges = new AtomicInteger();
+        properties.geometryProperty().addListener((ob, o, n) -> geometryChanges.incrementAndGet());
+
+        properties.beginUpdate();
+        properties.beginUpdate();
+        properties.setMinX(1);
+        properties.endUpdate();
+        properties.setMinY(2);
+        assertEquals(0, geometryChanges.get());
+        assertEquals(1, properties.getMinX());
+        properties.endUpdate();
+
+        assertEquals(1, geometryChanges.get());
+        assertThrows(IllegalStateException.class, properties::endUpdate);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package io.github.k7t3.hpt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScreenFingerprintTest {
+
+    @Test
+    void testFormat() {
+        assertEquals("0,0,1920,1080@1", ScreenFingerprint.format(0, 0, 1920, 1080, 1, 1));
+        assertEquals("-1280,0,1280,1024@1.25", ScreenFingerprint.format(-1280, 0, 1280, 1024, 1.25, 1.25));
+        assertEquals("0,0,2560,1440@1.5,2", ScreenFingerprint.format(0, 0, 2560, 1440, 1.5, 2));
+    }
+
+    @Test
+    void testLayoutIgnoresOrder() {
+        var a = ScreenFingerprint.format(0, 0, 1920, 1080, 1, 1);
+        var b = ScreenFingerprint.format(1920, 0, 1920, 1080, 1, 1);
+
+        assertEquals(
+                ScreenFingerprint.layoutOfFingerprints(List.of(a, b)),
+                ScreenFingerprint.layoutOfFingerprints(List.of(b, a)));
+        assertNotEquals(
+                ScreenFingerprint.layoutOfFingerprints(List.of(a, b)),
+                ScreenFingerprint.layoutOfFingerprints(List.of(a)));
+    }
+
+}
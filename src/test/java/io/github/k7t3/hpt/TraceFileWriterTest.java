@@ -0,0 +1,122 @@
+package io.github.k7t3.hpt;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceFileWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWriteSegment() throws IOException {
+        var writer = new TraceFileWriter(directory);
+
+        // 停止中のイベントは書き出さない
+        writer.pointerChanged(PointerEventType.MOVED, 1, 1, 1);
+
+        writer.start();
+        for (int i = 0; i < 1000; i++) {
+            writer.pointerChanged(PointerEventType.MOVED, i, i, i + 1);
+        }
+        writer.pointerChanged(PointerEventType.CLICKED, 1000, 10, 20);
+        writer.close(10_000);
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.collect(Collectors.toList());
+        }
+        assertEquals(1, files.size());
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(files.get(0))).order(ByteOrder.LITTLE_ENDIAN);
+        // 書き込んだ位置で切り詰められる
+        assertEquals(TraceFileWriter.HEADER_SIZE + (1001 - writer.getDroppedCount()) * TraceFileWriter.RECORD_SIZE,
+                buffer.capacity());
+        assertEquals(TraceFileWriter.MAGIC, buffer.getInt());
+        assertEquals(TraceFileWriter.VERSION, buffer.getInt());
+        assertEquals(TraceFileWriter.RECORD_SIZE, buffer.getInt());
+        assertEquals(0, buffer.getInt());
+
+        buffer.position(TraceFileWriter.HEADER_SIZE);
+        int count = 0;
+        while (buffer.hasRemaining()) {
+            long timestamp = buffer.getLong();
+            float x = buffer.getFloat();
+            float y = buffer.getFloat();
+            int type = buffer.getInt();
+            buffer.getInt();
+            if (type == 0) {
+                break;
+            }
+            if (count < 1000) {
+                assertEquals(count, timestamp);
+                assertEquals(count + 1, y);
+                assertEquals(PointerEventType.MOVED.ordinal() + 1, type);
+            } else {
+                assertEquals(10, x);
+                assertEquals(PointerEventType.CLICKED.ordinal() + 1, type);
+            }
+            count++;
+        }
+        assertEquals(1001, count + writer.getDroppedCount());
+    }
+
+    @Test
+    void testRestartImmediately() throws IOException {
+        var writer = new TraceFileWriter(directory);
+
+        // 同じミリ秒のうちに開始し直してもファイル名が重複しない
+        for (int i = 0; i < 3; i++) {
+            writer.start();
+            writer.pointerChanged(PointerEventType.MOVED, i, i, i);
+            writer.stop();
+        }
+        writer.close(10_000);
+
+        try (Stream<Path> stream = Files.list(directory)) {
+            assertEquals(3, stream.count());
+        }
+        assertFalse(writer.isRunning());
+    }
+
+    @Test
+    void testWriteAcrossMappings() throws IOException {
+        var writer = new TraceFileWriter(directory);
+
+        // 最初にマップした領域を超えて書き込む。キューの容量に収まる数なので破棄されない
+        int events = TraceFileWriter.MAP_SIZE / TraceFileWriter.RECORD_SIZE + 100;
+        writer.start();
+        for (int i = 0; i < events; i++) {
+            writer.pointerChanged(PointerEventType.MOVED, i, i, i);
+        }
+        writer.close(10_000);
+        assertEquals(0, writer.getDroppedCount());
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.collect(Collectors.toList());
+        }
+        assertEquals(1, files.size());
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(files.get(0))).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(TraceFileWriter.HEADER_SIZE + (long) events * TraceFileWriter.RECORD_SIZE, buffer.capacity());
+
+        // マップの境界をまたいでも連続して書き込まれている
+        buffer.position(TraceFileWriter.HEADER_SIZE);
+        for (int i = 0; i < events; i++) {
+            assertEquals(i, buffer.getLong());
+            buffer.position(buffer.position() + TraceFileWriter.RECORD_SIZE - Long.BYTES);
+        }
+    }
+}
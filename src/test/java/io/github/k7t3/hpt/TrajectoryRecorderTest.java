@@ -0,0 +1,77 @@
+package io.github.k7t3.hpt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrajectoryRecorderTest {
+
+    @Test
+    void testIgnoredWhileStopped() {
+        var recorder = new TrajectoryRecorder(16);
+        recorder.pointerChanged(PointerEventType.MOVED, 1, 1, 1);
+        assertEquals(0, recorder.size());
+
+        recorder.start();
+        recorder.pointerChanged(PointerEventType.MOVED, 2, 2, 2);
+        recorder.stop();
+        recorder.pointerChanged(PointerEventType.MOVED, 3, 3, 3);
+        assertEquals(1, recorder.size());
+    }
+
+    @Test
+    void testOverwriteOldest() {
+        var recorder = new TrajectoryRecorder(10);
+        assertEquals(16, recorder.getCapacity());
+
+        recorder.start();
+        for (int i = 0; i < 100; i++) {
+            recorder.pointerChanged(PointerEventType.MOVED, i, i, i * 2);
+        }
+
+        // 書き込み中のスロットを避けるため容量より1件少なく保持する
+        assertEquals(15, recorder.size());
+
+        List<Long> timestamps = new ArrayList<>();
+        long next = recorder.read(0, Integer.MAX_VALUE, (t, x, y) -> {
+            assertEquals(t, (long) x);
+            assertEquals(t * 2, (long) y);
+            timestamps.add(t);
+        });
+        assertEquals(100, next);
+        assertEquals(85L, timestamps.get(0));
+        assertEquals(99L, timestamps.get(timestamps.size() - 1));
+    }
+
+    @Test
+    void testWindow() {
+        var recorder = new TrajectoryRecorder(1024);
+        recorder.start();
+        for (int i = 0; i < 100; i++) {
+            recorder.pointerChanged(PointerEventType.DRAGGED, i * 10L, i, i);
+        }
+
+        List<Long> timestamps = new ArrayList<>();
+        int count = recorder.window(205, 250, (t, x, y) -> timestamps.add(t));
+
+        assertEquals(4, count);
+        assertEquals(List.of(210L, 220L, 230L, 240L), timestamps);
+        assertEquals(21, recorder.findSequence(205));
+        assertEquals(100, recorder.findSequence(5000));
+    }
+
+    @Test
+    void testClear() {
+        var recorder = new TrajectoryRecorder(64);
+        recorder.start();
+        recorder.pointerChanged(PointerEventType.MOVED, 1, 1, 1);
+        recorder.clear();
+        recorder.pointerChanged(PointerEventType.MOVED, 2, 2, 2);
+
+        assertEquals(1, recorder.size());
+        assertEquals(1, recorder.window(0, Long.MAX_VALUE, (t, x, y) -> assertEquals(2, t)));
+    }
+}